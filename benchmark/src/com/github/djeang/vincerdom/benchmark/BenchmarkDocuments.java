@@ -0,0 +1,113 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds benchmark documents of a given size out of <code>sample-pom.xml</code>, shared with the tests of the
+ * main module. Documents smaller than the sample are obtained by dropping root children, larger ones by
+ * repeating its dependencies. <p>
+ * The sample is read from the file given by the <code>vincerdom.samplePom</code> system property, by default
+ * the test resource as seen from the <code>benchmark</code> directory.
+ */
+final class BenchmarkDocuments {
+
+    private static final String SAMPLE_PROPERTY = "vincerdom.samplePom";
+
+    private static final String DEFAULT_SAMPLE = "../test/com/github/djeang/vincerdom/sample-pom.xml";
+
+    private BenchmarkDocuments() {
+    }
+
+    static String xml(String size) {
+        long target = parseSize(size);
+        VDocument doc = VDocument.parse(samplePom());
+        Element root = doc.getW3cDocument().getDocumentElement();
+        Element dependencies = (Element) root.getElementsByTagName("dependencies").item(0);
+        List<Element> templates = new ArrayList<>();
+        while (dependencies.getFirstChild() != null) {
+            Node child = dependencies.removeChild(dependencies.getFirstChild());
+            if (child instanceof Element) {
+                templates.add((Element) child);
+            }
+        }
+        boolean removed = true;
+        while (removed && length(doc) > target) {
+            removed = removeLastChildExcept(root, dependencies);
+        }
+        int baseLength = length(doc);
+        templates.forEach(template -> dependencies.appendChild(template.cloneNode(true)));
+        int dependencyLength = (length(doc) - baseLength) / templates.size();
+        dependencies.setTextContent(null);
+        long count = Math.max(1, (target - baseLength) / dependencyLength);
+        for (int i = 0; i < count; i++) {
+            Element dependency = (Element) templates.get(i % templates.size()).cloneNode(true);
+            Node artifactId = dependency.getElementsByTagName("artifactId").item(0);
+            artifactId.setTextContent(artifactId.getTextContent() + "-" + i);
+            dependencies.appendChild(dependency);
+        }
+        return doc.printAsString();
+    }
+
+    static Path writeTempFile(String xml) {
+        try {
+            Path file = Files.createTempFile("vincer-dom-benchmark", ".xml");
+            Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean removeLastChildExcept(Element root, Element kept) {
+        for (Node child = root.getLastChild(); child != null; child = child.getPreviousSibling()) {
+            if (child instanceof Element && child != kept) {
+                root.removeChild(child);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path samplePom() {
+        Path file = Paths.get(System.getProperty(SAMPLE_PROPERTY, DEFAULT_SAMPLE));
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalStateException("Sample file " + file.toAbsolutePath() + " not found. Run from the "
+                    + "benchmark directory or set the " + SAMPLE_PROPERTY + " system property.");
+        }
+        return file;
+    }
+
+    private static int length(VDocument doc) {
+        return doc.printAsString().length();
+    }
+
+    private static long parseSize(String size) {
+        if (size.endsWith("MB")) {
+            return Long.parseLong(size.substring(0, size.length() - 2)) * 1024 * 1024;
+        }
+        if (size.endsWith("KB")) {
+            return Long.parseLong(size.substring(0, size.length() - 2)) * 1024;
+        }
+        return Long.parseLong(size);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Removes half of the children of a wide element, then moves the remaining ones under another element,
+ * either one element at a time or with the bulk methods. The document is rebuilt before each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BulkEditBenchmark {
+
+    private static final Predicate<VElement<Void>> EVEN = item -> item.attr("index").endsWith("0");
+
+    @Param({"1000", "10000", "100000"})
+    public int childCount;
+
+    private VElement<VDocument> root;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        root = VDocument.of("root").root();
+        VElement<?> items = root.add("items");
+        for (int i = 0; i < childCount; i++) {
+            items.add("item").attr("index", Integer.toString(i % 2 * 10));
+        }
+    }
+
+    @Benchmark
+    public VElement<?> vincerOneByOne() {
+        VElement<?> items = root.get("items");
+        items.children("item").stream().filter(EVEN).forEach(VElement::remove);
+        VElement<?> target = root.add("target");
+        for (VElement<Void> item : items.children("item")) {
+            target.add(item);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public VElement<?> vincerBulk() {
+        VElement<?> items = root.get("items").removeChildren("item", EVEN);
+        List<VElement<Void>> remaining = items.children("item");
+        return root.add("target").addAll(remaining);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VElement;
+import com.github.djeang.vincerdom.VTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates new documents, or subtrees in another document, out of the same source.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CopyBenchmark {
+
+    @Param({"1KB", "100KB", "10MB"})
+    public String size;
+
+    private String xml;
+
+    private VDocument source;
+
+    private VTemplate template;
+
+    private VTemplate dependenciesTemplate;
+
+    private VDocument target;
+
+    @Setup
+    public void setup() {
+        xml = BenchmarkDocuments.xml(size);
+        source = VDocument.parse(xml);
+        template = VTemplate.of(source);
+        dependenciesTemplate = VTemplate.of(source.root().get("dependencies"));
+        target = VDocument.of("target");
+    }
+
+    @Benchmark
+    public VDocument vincerReparse() {
+        return VDocument.parse(xml);
+    }
+
+    @Benchmark
+    public VDocument vincerCopy() {
+        return source.copy();
+    }
+
+    @Benchmark
+    public VDocument vincerTemplate() {
+        return template.newDocument();
+    }
+
+    @Benchmark
+    public Document w3cCloneNode() {
+        return (Document) source.getW3cDocument().cloneNode(true);
+    }
+
+    @Benchmark
+    public VElement<?> vincerAddFromOtherDocument() {
+        VElement<?> added = target.root().add(source.root().get("dependencies"));
+        added.remove();
+        return added;
+    }
+
+    @Benchmark
+    public VElement<?> vincerAddTemplate() {
+        VElement<?> added = target.root().add(dependenciesTemplate);
+        added.remove();
+        return added;
+    }
+
+    @Benchmark
+    public Element w3cCloneAndAdopt() {
+        Element cloned = (Element) source.root().get("dependencies").getW3cElement().cloneNode(true);
+        target.getW3cDocument().adoptNode(cloned);
+        return cloned;
+    }
+
+}
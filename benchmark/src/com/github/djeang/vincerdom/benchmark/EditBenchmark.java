@@ -0,0 +1,95 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VElement;
+import org.jdom2.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a deep missing path then removes it, so the document is the same at each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EditBenchmark {
+
+    private static final String[] PATH = {"profiles", "profile", "build", "pluginManagement", "plugins", "plugin"};
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    private VDocument vDocument;
+
+    private org.jdom2.Document jdomDocument;
+
+    @Setup
+    public void setup() throws Exception {
+        String xml = BenchmarkDocuments.xml(size);
+        vDocument = VDocument.parse(xml);
+        jdomDocument = new SAXBuilder().build(new StringReader(xml));
+    }
+
+    @Benchmark
+    public VElement<?> vincerMakeDeepPath() {
+        VElement<?> made = vDocument.root().get(String.join("/", PATH)).make();
+        vDocument.root().get(PATH[0]).remove();
+        return made;
+    }
+
+    @Benchmark
+    public Element w3cMakeDeepPath() {
+        Document document = vDocument.getW3cDocument();
+        Element element = document.getDocumentElement();
+        for (String name : PATH) {
+            Element child = null;
+            for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && name.equals(node.getNodeName())) {
+                    child = (Element) node;
+                    break;
+                }
+            }
+            if (child == null) {
+                child = (Element) element.appendChild(document.createElement(name));
+            }
+            element = child;
+        }
+        document.getDocumentElement().removeChild(element.getParentNode().getParentNode().getParentNode()
+                .getParentNode().getParentNode());
+        return element;
+    }
+
+    @Benchmark
+    public org.jdom2.Element jdomMakeDeepPath() {
+        org.jdom2.Element element = jdomDocument.getRootElement();
+        for (String name : PATH) {
+            org.jdom2.Element child = element.getChild(name);
+            if (child == null) {
+                child = new org.jdom2.Element(name);
+                element.addContent(child);
+            }
+            element = child;
+        }
+        jdomDocument.getRootElement().removeChild(PATH[0]);
+        return element;
+    }
+
+}
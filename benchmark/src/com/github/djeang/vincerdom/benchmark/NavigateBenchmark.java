@@ -0,0 +1,134 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VCompactDocument;
+import com.github.djeang.vincerdom.VCompactElement;
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VElement;
+import org.jdom2.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NavigateBenchmark {
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    private VDocument vDocument;
+
+    private VDocument indexedDocument;
+
+    private VCompactDocument compactDocument;
+
+    private org.jdom2.Document jdomDocument;
+
+    @Setup
+    public void setup() throws Exception {
+        String xml = BenchmarkDocuments.xml(size);
+        vDocument = VDocument.parse(xml);
+        vDocument.root().get("dependencies").add("last");
+        indexedDocument = VDocument.parse(xml).indexChildren();
+        indexedDocument.root().get("dependencies").add("last");
+        compactDocument = VCompactDocument.parse(xml);
+        jdomDocument = new SAXBuilder().build(new StringReader(xml));
+    }
+
+    @Benchmark
+    public VElement<?> vincerGetPath() {
+        return vDocument.root().get("dependencies/dependency/artifactId");
+    }
+
+    @Benchmark
+    public VCompactElement vincerCompactGetPath() {
+        return compactDocument.root().get("dependencies/dependency/artifactId");
+    }
+
+    @Benchmark
+    public Element w3cGetPath() {
+        Element element = vDocument.getW3cDocument().getDocumentElement();
+        for (String name : new String[] {"dependencies", "dependency", "artifactId"}) {
+            element = w3cChild(element, name);
+        }
+        return element;
+    }
+
+    @Benchmark
+    public org.jdom2.Element jdomGetPath() {
+        return jdomDocument.getRootElement().getChild("dependencies").getChild("dependency")
+                .getChild("artifactId");
+    }
+
+    @Benchmark
+    public VElement<?> vincerGetLastOfWideElement() {
+        return vDocument.root().get("dependencies/last");
+    }
+
+    @Benchmark
+    public VElement<?> vincerIndexedGetLastOfWideElement() {
+        return indexedDocument.root().get("dependencies/last");
+    }
+
+    @Benchmark
+    public List<VElement<Void>> vincerChildrenWithPredicate() {
+        return vDocument.root().get("dependencies").children("dependency",
+                dep -> "org.hibernate".equals(dep.get("groupId").text()));
+    }
+
+    @Benchmark
+    public List<VCompactElement> vincerCompactChildrenWithPredicate() {
+        return compactDocument.root().get("dependencies").children("dependency",
+                dep -> "org.hibernate".equals(dep.get("groupId").text()));
+    }
+
+    @Benchmark
+    public List<Element> w3cChildrenWithPredicate() {
+        Element dependencies = w3cChild(vDocument.getW3cDocument().getDocumentElement(), "dependencies");
+        List<Element> result = new ArrayList<>();
+        for (Node node = dependencies.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && "dependency".equals(node.getNodeName())
+                    && "org.hibernate".equals(w3cChild((Element) node, "groupId").getTextContent())) {
+                result.add((Element) node);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<org.jdom2.Element> jdomChildrenWithPredicate() {
+        return jdomDocument.getRootElement().getChild("dependencies").getChildren("dependency").stream()
+                .filter(dep -> "org.hibernate".equals(dep.getChildText("groupId")))
+                .collect(Collectors.toList());
+    }
+
+    private static Element w3cChild(Element parent, String name) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VCompactDocument;
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VParseEngine;
+import com.github.djeang.vincerdom.VSnapshot;
+import org.jdom2.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParseBenchmark {
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    private String xml;
+
+    private byte[] bytes;
+
+    private Path file;
+
+    private Path snapshotFile;
+
+    private DocumentBuilder documentBuilder;
+
+    private SAXBuilder saxBuilder;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = BenchmarkDocuments.xml(size);
+        bytes = xml.getBytes(StandardCharsets.UTF_8);
+        file = BenchmarkDocuments.writeTempFile(xml);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));  // not just edited
+        snapshotFile = VSnapshot.snapshotFileOf(file);
+        VSnapshot.parse(file);
+        documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        saxBuilder = new SAXBuilder();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDocuments.delete(file);
+        BenchmarkDocuments.delete(snapshotFile);
+    }
+
+    @Benchmark
+    public VDocument vincerParseString() {
+        return VDocument.parse(xml);
+    }
+
+    @Benchmark
+    public VDocument vincerParseInputStream() {
+        return VDocument.parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public VDocument vincerParsePath() {
+        return VDocument.parse(file);
+    }
+
+    @Benchmark
+    public VDocument vincerParseMapped() {
+        return VDocument.parseMapped(file);
+    }
+
+    @Benchmark
+    public String vincerParsePathAndGetOne() {
+        return VDocument.parse(file).root().get("dependencies").get("dependency").get("artifactId").text();
+    }
+
+    @Benchmark
+    public String vincerParseLazyAndGetOne() {
+        return VDocument.parseLazy(file).root().get("dependencies").get("dependency").get("artifactId").text();
+    }
+
+    @Benchmark
+    public VDocument vincerSnapshotParse() {
+        return VSnapshot.parse(file);
+    }
+
+    @Benchmark
+    public String vincerSnapshotParseAndGetOne() {
+        return VSnapshot.parse(file).root().get("dependencies").get("dependency").get("artifactId").text();
+    }
+
+    @Benchmark
+    public long vincerSnapshotLoadAndVisitAll() {
+        return visitAll(VSnapshot.load(snapshotFile).getW3cDocument());
+    }
+
+    @Benchmark
+    public VCompactDocument vincerSnapshotLoadCompact() {
+        return VSnapshot.loadCompact(snapshotFile);
+    }
+
+    @Benchmark
+    public VDocument vincerStaxParseInputStream() {
+        return VDocument.parse(new ByteArrayInputStream(bytes), VParseEngine.STAX);
+    }
+
+    @Benchmark
+    public long vincerParseAndVisitAll() {
+        return visitAll(VDocument.parse(new ByteArrayInputStream(bytes)).getW3cDocument());
+    }
+
+    @Benchmark
+    public long vincerStaxParseAndVisitAll() {
+        return visitAll(VDocument.parse(new ByteArrayInputStream(bytes), VParseEngine.STAX).getW3cDocument());
+    }
+
+    @Benchmark
+    public VCompactDocument vincerCompactParseInputStream() {
+        return VCompactDocument.parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public Document w3cParseInputStream() throws Exception {
+        return documentBuilder.parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public Document w3cParsePath() throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            return documentBuilder.parse(in);
+        }
+    }
+
+    @Benchmark
+    public org.jdom2.Document jdomParseInputStream() throws Exception {
+        return saxBuilder.build(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public org.jdom2.Document jdomParsePath() throws Exception {
+        return saxBuilder.build(file.toFile());
+    }
+
+    // Reads every node, as code processing a whole document does
+    private static long visitAll(Node document) {
+        long result = 0;
+        Node node = document;
+        while (node != null) {
+            String value = node.getNodeValue();
+            result += value == null ? node.getNodeName().length() : value.length();
+            Node next = node.getFirstChild();
+            while (next == null && node != null) {
+                next = node.getNextSibling();
+                node = node.getParentNode();
+            }
+            node = next;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrintBenchmark {
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    private VDocument vDocument;
+
+    private Transformer transformer;
+
+    private org.jdom2.Document jdomDocument;
+
+    private XMLOutputter outputter;
+
+    private OutputStream sink;
+
+    @Setup
+    public void setup(Blackhole blackhole) throws Exception {
+        String xml = BenchmarkDocuments.xml(size);
+        vDocument = VDocument.parse(xml);
+        transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        jdomDocument = new SAXBuilder().build(new StringReader(xml));
+        outputter = new XMLOutputter(Format.getPrettyFormat().setIndent("    "));
+        sink = new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                blackhole.consume(bytes);
+            }
+        };
+    }
+
+    @Benchmark
+    public String vincerPrintAsString() {
+        return vDocument.printAsString();
+    }
+
+    @Benchmark
+    public void vincerPrint() {
+        vDocument.print(sink);
+    }
+
+    @Benchmark
+    public String vincerPrintAsStringWithTransformer() {
+        return vDocument.printAsString(transformer -> {});
+    }
+
+    @Benchmark
+    public String w3cTransformer() throws Exception {
+        StringWriter writer = new StringWriter();
+        transformer.transform(new DOMSource(vDocument.getW3cDocument()), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String jdomOutputString() {
+        return outputter.outputString(jdomDocument);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.djeang.vincerdom.benchmark;
+
+import com.github.djeang.vincerdom.VDocument;
+import com.github.djeang.vincerdom.VElement;
+import com.github.djeang.vincerdom.VPath;
+import com.github.djeang.vincerdom.VXPath;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.xpath.XPathFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class XPathBenchmark {
+
+    private static final String EXPRESSION = "/project/dependencies/dependency[scope='test']";
+
+    @Param({"1KB", "100KB", "10MB", "100MB"})
+    public String size;
+
+    private VDocument vDocument;
+
+    private XPathExpression compiledExpression;
+
+    private VPath path;
+
+    private org.jdom2.Document jdomDocument;
+
+    private org.jdom2.xpath.XPathExpression<org.jdom2.Element> jdomExpression;
+
+    @Setup
+    public void setup() throws Exception {
+        String xml = BenchmarkDocuments.xml(size);
+        vDocument = VDocument.parse(xml);
+        compiledExpression = VXPath.compile(EXPRESSION);
+        path = VPath.compile(EXPRESSION);
+        jdomDocument = new SAXBuilder().build(new StringReader(xml));
+        jdomExpression = XPathFactory.instance().compile(EXPRESSION, Filters.element());
+    }
+
+    @Benchmark
+    public List<VElement<Void>> vincerCompiledExpression() {
+        return vDocument.xPath(compiledExpression);
+    }
+
+    @Benchmark
+    public List<VElement<Void>> vincerStringExpression() {
+        return vDocument.xPath(EXPRESSION);
+    }
+
+    @Benchmark
+    public List<VElement<Void>> vincerPath() {
+        return vDocument.xPath(path);
+    }
+
+    @Benchmark
+    public NodeList w3cCompiledExpression() throws Exception {
+        return (NodeList) compiledExpression.evaluate(vDocument.getW3cDocument(), XPathConstants.NODESET);
+    }
+
+    @Benchmark
+    public List<org.jdom2.Element> jdomCompiledExpression() {
+        return jdomExpression.evaluate(jdomDocument);
+    }
+
+}
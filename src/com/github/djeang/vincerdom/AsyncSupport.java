@@ -0,0 +1,46 @@
+package com.github.djeang.vincerdom;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the executor running asynchronous file operations when callers do not supply one : a shared pool of
+ * daemon platform threads, at most twice as many as there are processors, released after a minute of
+ * inactivity. Threads are reused across operations, so the per-thread builders, XPath caches and output
+ * buffers they pool are reused too, which would not be the case with a thread per task. Blocking file I/O
+ * never occupies the threads of {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+ */
+final class AsyncSupport {
+
+    static final int THREAD_COUNT = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private AsyncSupport() {
+    }
+
+    static ExecutorService defaultExecutor() {
+        return Holder.EXECUTOR;
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "vincer-dom-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Creates the executor on first use only
+    private static final class Holder {
+
+        private static final ExecutorService EXECUTOR = createExecutor();
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.github.djeang.vincerdom;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Appendable} encoding chars as UTF-8 straight into a {@link ByteBuffer} drained into a channel. <p>
+ * Buffers and encoder are pooled per thread, so printing a document allocates nothing but this object.
+ * Caller must call {@link #flush()} once done, which also gives buffers back to the pool.
+ */
+final class ChannelWriter implements Appendable, Flushable {
+
+    private static final int CHAR_BUFFER_SIZE = 8 * 1024;
+
+    private static final int BYTE_BUFFER_SIZE = 32 * 1024;
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<>();
+
+    private final WritableByteChannel channel;
+
+    private Buffers buffers;
+
+    private long byteCount;
+
+    private ChannelWriter(WritableByteChannel channel, Buffers buffers) {
+        this.channel = channel;
+        this.buffers = buffers;
+    }
+
+    static ChannelWriter of(WritableByteChannel channel) {
+        Buffers buffers = BUFFERS.get();
+        if (buffers == null) {
+            buffers = new Buffers();
+        } else {
+            BUFFERS.set(null);  // a nested writer on the same thread gets its own buffers
+        }
+        buffers.encoder.reset();
+        return new ChannelWriter(channel, buffers);
+    }
+
+    @Override
+    public ChannelWriter append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public ChannelWriter append(CharSequence csq, int start, int end) throws IOException {
+        CharBuffer chars = buffers.chars;
+        int index = start;
+        while (index < end) {
+            int count = Math.min(chars.remaining(), end - index);
+            if (csq instanceof String) {
+                chars.put((String) csq, index, index + count);
+            } else {
+                for (int i = index; i < index + count; i++) {
+                    chars.put(csq.charAt(i));
+                }
+            }
+            index += count;
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public ChannelWriter append(char c) throws IOException {
+        CharBuffer chars = buffers.chars;
+        chars.put(c);
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes written to the channel so far.
+     */
+    long byteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Encodes and writes pending chars, so bytes can be written to the channel by other means. This writer
+     * remains usable.
+     */
+    void flushPending() throws IOException {
+        encode(false);
+        drain();
+    }
+
+    /**
+     * Encodes and writes all pending chars, then releases the buffers. This writer must not be used afterward.
+     */
+    @Override
+    public void flush() throws IOException {
+        encode(true);
+        ByteBuffer bytes = buffers.bytes;
+        while (buffers.encoder.flush(bytes) == CoderResult.OVERFLOW) {
+            drain();
+        }
+        drain();
+        buffers.chars.clear();
+        BUFFERS.set(buffers);
+        buffers = null;
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        CharBuffer chars = buffers.chars;
+        chars.flip();
+        while (true) {
+            CoderResult result = buffers.encoder.encode(chars, buffers.bytes, endOfInput);
+            if (!result.isOverflow()) {
+                break;
+            }
+            drain();
+        }
+        chars.compact();  // keeps a high surrogate waiting for its low one
+    }
+
+    private void drain() throws IOException {
+        ByteBuffer bytes = buffers.bytes;
+        bytes.flip();
+        byteCount += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private static final class Buffers {
+
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()  // as OutputStreamWriter does
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional index of the child elements of an element by tag name, stored as user data of the element. <p>
+ * Indexing is enabled either on a single element, or on a whole document in which case each element gets
+ * its index the first time its children are looked up by name. Indexes are built lazily, then kept in
+ * sync by the {@link VElement} methods modifying children. Modifications made directly on the W3C nodes
+ * are not tracked : enabling indexing again discards existing indexes.
+ */
+final class ChildIndex {
+
+    private static final String KEY = "vincerdom.childIndex";
+
+    private Map<String, List<Element>> byName;  // null until built or after invalidation
+
+    private int generation;
+
+    private ChildIndex() {
+    }
+
+    /**
+     * Enables indexing for all elements of the specified document, discarding indexes built so far.
+     */
+    static void enable(Document document) {
+        Integer generation = (Integer) document.getUserData(KEY);
+        document.setUserData(KEY, generation == null ? 1 : generation + 1, null);
+    }
+
+    /**
+     * Enables indexing for the specified element, discarding its index if already built.
+     */
+    static void enable(Element element) {
+        ChildIndex index = (ChildIndex) element.getUserData(KEY);
+        if (index == null) {
+            element.setUserData(KEY, new ChildIndex(), null);
+        } else {
+            index.byName = null;
+        }
+    }
+
+    /**
+     * Returns the first child element of the specified parent having the specified name,
+     * or <code>null</code> if there is none.
+     */
+    static Element firstChild(Element parent, String name) {
+        List<Element> children = children(parent, name);
+        if (children == null) {
+            return DomUtils.firstChildElement(parent, name);
+        }
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    /**
+     * Returns the indexed child elements of the specified parent having the specified name, in document order,
+     * or <code>null</code> if indexing is not enabled for this parent. The returned list must not be modified.
+     */
+    static List<Element> children(Element parent, String name) {
+        ChildIndex index = indexOf(parent);
+        if (index == null) {
+            return null;
+        }
+        List<Element> children = index.byName.get(name);
+        return children == null ? Collections.emptyList() : children;
+    }
+
+    /**
+     * Builds the index of the specified element now if indexing is enabled for it, so later lookups only read it.
+     */
+    static void prepare(Element element) {
+        indexOf(element);
+    }
+
+    /**
+     * Records that the specified child has been appended as last child of the specified parent.
+     */
+    static void appended(Node parent, Element child) {
+        ChildIndex index = builtIndex(parent);
+        if (index != null) {
+            index.byName.computeIfAbsent(child.getTagName(), key -> new ArrayList<>()).add(child);
+        }
+    }
+
+    /**
+     * Records that the specified child has been removed from the specified parent.
+     */
+    static void removed(Node parent, Element child) {
+        ChildIndex index = builtIndex(parent);
+        if (index != null) {
+            List<Element> children = index.byName.get(child.getTagName());
+            if (children != null) {
+                children.remove(child);
+            }
+        }
+    }
+
+    /**
+     * Records that children of the specified parent have changed in a way that is not worth tracking.
+     */
+    static void invalidate(Node parent) {
+        ChildIndex index = builtIndex(parent);
+        if (index != null) {
+            index.byName = null;
+        }
+    }
+
+    private static ChildIndex builtIndex(Node parent) {
+        if (parent == null) {
+            return null;
+        }
+        ChildIndex index = (ChildIndex) parent.getUserData(KEY);
+        return index == null || index.byName == null ? null : index;
+    }
+
+    private static ChildIndex indexOf(Element parent) {
+        ChildIndex index = (ChildIndex) parent.getUserData(KEY);
+        Integer documentGeneration = (Integer) parent.getOwnerDocument().getUserData(KEY);
+        if (index == null) {
+            if (documentGeneration == null) {
+                return null;
+            }
+            index = new ChildIndex();
+            parent.setUserData(KEY, index, null);
+        }
+        int generation = documentGeneration == null ? 0 : documentGeneration;
+        if (index.byName == null || index.generation != generation) {
+            index.build(parent);
+            index.generation = generation;
+        }
+        return index;
+    }
+
+    private void build(Element parent) {
+        byName = new HashMap<>();
+        for (Element child = DomUtils.firstChildElement(parent); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            byName.computeIfAbsent(child.getTagName(), key -> new ArrayList<>()).add(child);
+        }
+    }
+
+}
@@ -0,0 +1,582 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes a W3C document directly to an {@link Appendable}, without going through
+ * {@link javax.xml.transform.Transformer}. <p>
+ * Output reproduces what the JDK identity transformer produces (JDK 9 and later) when configured as
+ * {@link VDocument#print(java.io.OutputStream, java.util.function.Consumer)} does by default : UTF-8,
+ * indentation of 4 spaces, same escaping and same placement of line breaks. This holds whatever the running
+ * JDK : on Java 8, output follows JDK 9 rather than the Java 8 transformer.
+ * The indentation rules mimic the JDK serializer state machine, hence the counters below. <p>
+ * Printers created without indentation write nodes as they are, which suits fragments inserted
+ * in existing content.
+ */
+final class DomPrinter {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final int INDENT_AMOUNT = 4;
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    private final Appendable out;
+
+    private final boolean indent;
+
+    private boolean xml11;
+
+    private int depth;
+
+    private boolean startTagOpen;
+
+    private final List<String> attributes = new ArrayList<>();  // names and values of the open start tag
+
+    private final Namespaces namespaces = new Namespaces();
+
+    private boolean preserveSpace;
+
+    private boolean[] preserveSpaces = new boolean[16];
+
+    private int childNodeNum;
+
+    private int[] childNodeNums = new int[16];
+
+    private boolean startNewLine;
+
+    private boolean prevText;
+
+    private final List<String> textBuffer = new ArrayList<>();
+
+    DomPrinter(Appendable out) {
+        this(out, true);
+    }
+
+    DomPrinter(Appendable out, boolean indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    /**
+     * Prints the specified document, XML declaration included.
+     */
+    void print(Document document) {
+        try {
+            xml11 = "1.1".equals(document.getXmlVersion());
+            boolean standalone = document.getXmlStandalone();
+            out.append("<?xml version=\"").append(document.getXmlVersion()).append("\" encoding=\"UTF-8\"");
+            if (!standalone) {
+                out.append(" standalone=\"no\"?>").append(LINE_SEPARATOR);
+            } else {
+                out.append("?>");
+            }
+            for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling()) {
+                node(child);
+            }
+            flushText(false);
+            if (!prevText) {
+                out.append(LINE_SEPARATOR);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Prints the specified node and its descendants, without XML declaration.
+     */
+    void printNode(Node node) {
+        try {
+            node(node);
+            flushText(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Prints the start tag of the specified element, attributes included. Namespace declarations are
+     * not kept in scope afterward.
+     */
+    void printStartTag(Element element) {
+        try {
+            boolean parentPreserveSpace = preserveSpace;
+            out.append('<').append(element.getTagName());
+            collectAttributes(element);
+            writeAttributes();
+            out.append('>');
+            namespaces.pop(depth);
+            preserveSpace = parentPreserveSpace;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void node(Node node) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                element((Element) node);
+                break;
+            case Node.TEXT_NODE:
+                text(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                cdata(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                comment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                processingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            default:  // doctype and entity references are ignored, as the JDK serializer does
+                break;
+        }
+    }
+
+    private void element(Element element) throws IOException {
+        childNodeNum++;
+        flushText(false);
+        closeStartTag();
+        if (shouldIndent() && startNewLine) {
+            indent(depth);
+        }
+        startNewLine = true;
+        out.append('<').append(element.getTagName());
+        if (depth == childNodeNums.length) {
+            childNodeNums = Arrays.copyOf(childNodeNums, depth * 2);
+            preserveSpaces = Arrays.copyOf(preserveSpaces, depth * 2);
+        }
+        childNodeNums[depth] = childNodeNum;
+        preserveSpaces[depth] = preserveSpace;
+        childNodeNum = 0;
+        depth++;
+        startTagOpen = true;
+        collectAttributes(element);
+        prevText = false;
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            node(child);
+        }
+        flushText(false);
+        if (startTagOpen) {
+            writeAttributes();
+            out.append("/>");
+            startTagOpen = false;
+        } else {
+            if (shouldIndent() && (childNodeNum > 1 || !prevText)) {
+                indent(depth - 1);
+            }
+            out.append("</").append(element.getTagName()).append('>');
+        }
+        namespaces.pop(depth);
+        depth--;
+        childNodeNum = childNodeNums[depth];
+        preserveSpace = preserveSpaces[depth];
+        prevText = false;
+    }
+
+    private void text(String text) throws IOException {
+        if (text.isEmpty()) {
+            return;
+        }
+        closeStartTag();
+        if (preserveSpace || !indent) {
+            writeText(text, 0);
+        } else {
+            textBuffer.add(text);
+        }
+    }
+
+    private void cdata(String text) throws IOException {
+        flushText(true);
+        if (text.isEmpty()) {
+            return;
+        }
+        closeStartTag();
+        if (shouldIndent() && childNodeNum > 1) {
+            indent(depth);
+        }
+        boolean open = false;
+        char first = text.charAt(0);
+        if (!isC0Control(first) && !Character.isSurrogate(first)) {  // the JDK does not open sections on these
+            out.append("<![CDATA[");
+            open = true;
+        }
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                out.append(LINE_SEPARATOR);
+            } else if (isC0Control(c)) {
+                if (open) {
+                    out.append("]]>");
+                    open = false;
+                }
+                writeCharRef(c);
+            } else if (Character.isSurrogate(c)) {
+                out.append(c);
+            } else if (c == ']' && i < length - 2 && text.charAt(i + 1) == ']' && text.charAt(i + 2) == '>') {
+                out.append("]]]]><![CDATA[>");
+                i += 2;
+            } else {
+                if (!open) {
+                    out.append("<![CDATA[");
+                    open = true;
+                }
+                out.append(c);
+            }
+        }
+        if (open) {
+            out.append("]]>");
+        }
+        prevText = true;
+    }
+
+    private void comment(String text) throws IOException {
+        childNodeNum++;
+        flushText(false);
+        closeStartTag();
+        if (shouldIndent()) {
+            indent(depth);
+        }
+        out.append("<!--");
+        boolean wasDash = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (wasDash && c == '-') {
+                out.append(" -");
+            } else {
+                out.append(c);
+            }
+            wasDash = c == '-';
+        }
+        if (!text.isEmpty() && text.charAt(text.length() - 1) == '-') {
+            out.append(' ');
+        }
+        out.append("-->");
+        startNewLine = true;
+    }
+
+    private void processingInstruction(String target, String data) throws IOException {
+        childNodeNum++;
+        flushText(false);
+        closeStartTag();
+        if (shouldIndent()) {
+            indent(depth);
+        }
+        out.append("<?").append(target);
+        if (!data.isEmpty() && !Character.isSpaceChar(data.charAt(0))) {
+            out.append(' ');
+        }
+        int endIndex = data.indexOf("?>");
+        if (endIndex >= 0) {
+            out.append(data, 0, endIndex).append("? >").append(data, endIndex + 2, data.length());
+        } else {
+            out.append(data);
+        }
+        out.append("?>");
+        startNewLine = true;
+    }
+
+    private void flushText(boolean beforeCdata) throws IOException {
+        if (textBuffer.isEmpty()) {
+            return;
+        }
+        if (!beforeCdata) {
+            childNodeNum++;
+        }
+        boolean skipNewLines = false;
+        if (depth > 0 && childNodeNum > 1) {
+            indent(depth);
+            startNewLine = true;
+            skipNewLines = true;
+        }
+        for (String text : textBuffer) {
+            int start = 0;
+            if (skipNewLines) {
+                while (start < text.length() && text.charAt(start) == '\n') {
+                    start++;
+                }
+                if (start == text.length()) {
+                    continue;
+                }
+                skipNewLines = false;
+            }
+            writeText(text, start);
+        }
+        textBuffer.clear();
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            writeAttributes();
+            out.append('>');
+            startTagOpen = false;
+        }
+    }
+
+    private boolean shouldIndent() {
+        return indent && depth > 0 && !preserveSpace;
+    }
+
+    private void indent(int indentDepth) throws IOException {
+        if (startNewLine) {
+            out.append(LINE_SEPARATOR);
+        }
+        for (int i = indentDepth * INDENT_AMOUNT; i > 0; i--) {
+            out.append(' ');
+        }
+    }
+
+    /*
+     * Computes the attributes to write in the start tag, namespace declarations included, in the order and with
+     * the names the JDK serializer would use : declarations already in scope are dropped and namespace-aware
+     * nodes get the declarations they need.
+     */
+    private void collectAttributes(Element element) {
+        attributes.clear();
+        NamedNodeMap attrs = element.getAttributes();
+        int length = attrs.getLength();
+        for (int i = 0; i < length; i++) {
+            Node attr = attrs.item(i);
+            String name = attr.getNodeName();
+            if (name.startsWith("xmlns")) {
+                int colon = name.lastIndexOf(':');
+                declare(colon > 0 ? name.substring(colon + 1) : "", attr.getNodeValue());
+            }
+        }
+        int generatedPrefixes = 0;
+        for (int i = 0; i < length; i++) {
+            Node attr = attrs.item(i);
+            String name = attr.getNodeName();
+            if (name.startsWith("xmlns")) {
+                continue;
+            }
+            String uri = attr.getNamespaceURI();
+            if (uri != null && !uri.isEmpty()) {
+                int colon = name.lastIndexOf(':');
+                String newPrefix = XML_NAMESPACE.equals(uri) ? "xml" : "ns" + generatedPrefixes++;
+                String prefix = colon > 0 ? name.substring(0, colon) : newPrefix;
+                declare(prefix, uri);
+                name = prefix + ":" + name;
+            }
+            addAttribute(patchName(name), attr.getNodeValue());
+        }
+        String uri = element.getNamespaceURI();
+        if (uri != null) {
+            String name = element.getTagName();
+            int colon = name.lastIndexOf(':');
+            declare(colon > 0 ? name.substring(0, colon) : "", uri);
+        } else if (element.getLocalName() != null) {
+            declare("", "");
+        }
+    }
+
+    private void declare(String prefix, String uri) {
+        if (!namespaces.push(prefix, uri, depth)) {
+            return;
+        }
+        if (prefix.isEmpty()) {
+            addAttribute("xmlns", uri);
+        } else if (!uri.isEmpty()) {
+            addAttribute("xmlns:" + prefix, uri);
+        }
+    }
+
+    private void addAttribute(String name, String value) {
+        int index = 0;
+        while (index < attributes.size() && !attributes.get(index).equals(name)) {
+            index += 2;
+        }
+        if (index < attributes.size()) {
+            attributes.set(index + 1, value);
+        } else {
+            attributes.add(name);
+            attributes.add(value);
+        }
+        if ("xml:space".equals(name)) {
+            if ("preserve".equals(value)) {
+                preserveSpace = true;
+            } else if ("default".equals(value)) {
+                preserveSpace = false;
+            }
+        }
+    }
+
+    /*
+     * Drops the prefix of names bound to no namespace, as the JDK serializer does.
+     */
+    private String patchName(String name) {
+        int lastColon = name.lastIndexOf(':');
+        if (lastColon <= 0) {
+            return name;
+        }
+        int firstColon = name.indexOf(':');
+        String prefix = name.substring(0, firstColon);
+        String localName = name.substring(lastColon + 1);
+        if ("".equals(namespaces.lookup(prefix))) {
+            return localName;
+        }
+        return firstColon != lastColon ? prefix + ':' + localName : name;
+    }
+
+    private void writeAttributes() throws IOException {
+        for (int i = 0; i < attributes.size(); i += 2) {
+            writeAttribute(attributes.get(i), attributes.get(i + 1));
+        }
+    }
+
+    private void writeAttribute(String name, String value) throws IOException {
+        out.append(' ').append(name).append("=\"");
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\n':
+                case '\r':
+                case '\t':
+                    writeCharRef(c);
+                    break;
+                default:
+                    if (isC0Control(c)) {
+                        writeCharRef(c);
+                    } else if (Character.isSurrogate(c)) {
+                        i = writeSurrogate(value, i);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private void writeText(String text, int start) throws IOException {
+        int length = text.length();
+        int cleanStart = start;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            if (c == '&') {
+                replacement = "&amp;";
+            } else if (c == '<') {
+                replacement = "&lt;";
+            } else if (c == '>') {
+                replacement = "&gt;";
+            } else if (c == '\n') {
+                replacement = LINE_SEPARATOR;
+            } else if (c == '\r' || isControl(c)) {
+                replacement = "&#" + (int) c + ";";
+            } else if (Character.isSurrogate(c)) {
+                out.append(text, cleanStart, i);
+                i = writeSurrogate(text, i);
+                cleanStart = i + 1;
+                continue;
+            } else {
+                continue;
+            }
+            out.append(text, cleanStart, i).append(replacement);
+            cleanStart = i + 1;
+        }
+        out.append(text, cleanStart, length);
+        prevText = true;
+    }
+
+    /*
+     * Writes the surrogate pair starting at the specified index as a character reference.
+     * Returns the index of the last char consumed.
+     */
+    private int writeSurrogate(String text, int index) throws IOException {
+        char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(index + 1))) {
+            out.append("&#").append(Integer.toString(Character.toCodePoint(c, text.charAt(index + 1)))).append(';');
+            return index + 1;
+        }
+        writeCharRef(c);
+        return index;
+    }
+
+    private void writeCharRef(char c) throws IOException {
+        out.append("&#").append(Integer.toString(c)).append(';');
+    }
+
+    private boolean isControl(char c) {
+        return isC0Control(c) || (c >= 0x7F && c <= 0x9F) || (xml11 && c == 0x2028);
+    }
+
+    private static boolean isC0Control(char c) {
+        return c < 0x20 && c != '\t' && c != '\n' && c != '\r';
+    }
+
+    /*
+     * Prefix to namespace mappings in scope, along with the depth of the element declaring them.
+     */
+    private static final class Namespaces {
+
+        private final List<String> prefixes = new ArrayList<>();
+
+        private final List<String> uris = new ArrayList<>();
+
+        private int[] depths = new int[16];
+
+        String lookup(String prefix) {
+            for (int i = prefixes.size() - 1; i >= 0; i--) {
+                if (prefixes.get(i).equals(prefix)) {
+                    return uris.get(i);
+                }
+            }
+            if (prefix.isEmpty()) {
+                return "";
+            }
+            return "xml".equals(prefix) ? XML_NAMESPACE : null;
+        }
+
+        /*
+         * Returns false if the mapping is already in scope or cannot be declared.
+         */
+        boolean push(String prefix, String uri, int depth) {
+            if (prefix.startsWith("xml") || uri.equals(lookup(prefix))) {
+                return false;
+            }
+            int size = prefixes.size();
+            if (size == depths.length) {
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            prefixes.add(prefix);
+            uris.add(uri);
+            depths[size] = depth;
+            return true;
+        }
+
+        void pop(int depth) {
+            for (int i = prefixes.size() - 1; i >= 0 && depths[i] >= depth; i--) {
+                prefixes.remove(i);
+                uris.remove(i);
+            }
+        }
+
+    }
+
+}
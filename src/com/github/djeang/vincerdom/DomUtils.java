@@ -0,0 +1,71 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Sibling-walking helpers avoiding {@link org.w3c.dom.NodeList} and its index based access.
+ */
+final class DomUtils {
+
+    private DomUtils() {
+    }
+
+    /**
+     * Returns the first child element of the specified node, or <code>null</code> if there is none.
+     * Loads the content of the node if it belongs to a lazy document.
+     */
+    static Element firstChildElement(Node parent) {
+        Node first = parent.getFirstChild();
+        if (first == null && LazySource.load(parent)) {
+            first = parent.getFirstChild();
+        }
+        return elementFrom(first);
+    }
+
+    /**
+     * Returns the next sibling element of the specified node, or <code>null</code> if there is none.
+     */
+    static Element nextSiblingElement(Node node) {
+        return elementFrom(node.getNextSibling());
+    }
+
+    /**
+     * Returns the first child element of the specified node having the specified name,
+     * or <code>null</code> if there is none.
+     */
+    static Element firstChildElement(Node parent, String name) {
+        String symbol = SymbolTable.of(name);
+        for (Element child = firstChildElement(parent); child != null; child = nextSiblingElement(child)) {
+            if (SymbolTable.hasName(child, symbol)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deep copies the specified node into the specified document. The copy is not attached. <p>
+     * Error checking is turned off meanwhile : the source tree is already well-formed, and checks
+     * on insertion walk the ancestors of each copied node.
+     */
+    static Node importNode(Document document, Node source) {
+        LazySource.loadAll(source);
+        boolean strictErrorChecking = document.getStrictErrorChecking();
+        document.setStrictErrorChecking(false);
+        try {
+            return document.importNode(source, true);
+        } finally {
+            document.setStrictErrorChecking(strictErrorChecking);
+        }
+    }
+
+    private static Element elementFrom(Node node) {
+        while (node != null && node.getNodeType() != Node.ELEMENT_NODE) {
+            node = node.getNextSibling();
+        }
+        return (Element) node;
+    }
+
+}
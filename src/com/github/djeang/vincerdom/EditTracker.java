@@ -0,0 +1,312 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records which elements of a document have been modified since it was read from its source file, stored as
+ * user data of the document. This allows writing the document back by copying unchanged regions of the source
+ * byte for byte and serializing only modified elements. <p>
+ * An element whose children or text changed is serialized with all of its direct content, though its original
+ * child elements are still copied from the source when unchanged. An element whose attributes only changed gets
+ * its start tag serialized. Modifications made directly on the W3C nodes are not tracked.
+ */
+final class EditTracker {
+
+    private static final String KEY = "vincerdom.editTracker";
+
+    private final Path source;
+
+    private final Map<Element, List<Element>> originalChildren = new IdentityHashMap<>();  // content changed
+
+    private final Set<Element> attributesChanged = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Set<Element> dirty = Collections.newSetFromMap(new IdentityHashMap<>());  // modified or ancestor
+
+    private long size;
+
+    private FileTime lastModified;
+
+    private EditTracker(Path source) {
+        this.source = source;
+    }
+
+    /**
+     * Starts tracking modifications of the specified document, read from the specified file. Does nothing if
+     * tracking is already started.
+     */
+    static void enable(Document document, Path source) {
+        if (of(document) == null) {
+            EditTracker tracker = new EditTracker(source);
+            try {
+                tracker.stamp();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            document.setUserData(KEY, tracker, null);
+        }
+    }
+
+    /**
+     * Returns the tracker of the specified document, or <code>null</code> if modifications are not tracked.
+     */
+    static EditTracker of(Document document) {
+        return (EditTracker) document.getUserData(KEY);
+    }
+
+    /**
+     * Records that the children or text of the specified node are about to change. Must be called before
+     * the change.
+     */
+    static void contentChanging(Node node) {
+        if (!(node instanceof Element)) {
+            return;
+        }
+        EditTracker tracker = of(node.getOwnerDocument());
+        if (tracker == null) {
+            return;
+        }
+        Element element = (Element) node;
+        if (!tracker.originalChildren.containsKey(element)) {
+            List<Element> children = new ArrayList<>();
+            for (Element child = DomUtils.firstChildElement(element); child != null;
+                 child = DomUtils.nextSiblingElement(child)) {
+                children.add(child);
+            }
+            tracker.originalChildren.put(element, children);
+        }
+        tracker.markDirty(element);
+    }
+
+    /**
+     * Records that attributes of the specified element are about to change.
+     */
+    static void attributesChanging(Element element) {
+        EditTracker tracker = of(element.getOwnerDocument());
+        if (tracker != null) {
+            tracker.attributesChanged.add(element);
+            tracker.markDirty(element);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified file is the source file of this tracker.
+     */
+    boolean isSource(Path file) {
+        try {
+            return Files.exists(file) && Files.exists(source) && Files.isSameFile(file, source);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the specified document to the specified channel, copying unmodified regions from the source file.
+     * Returns <code>false</code>, leaving the channel in an undefined state, if the source file has changed since
+     * last read or saved, or does not match the document.
+     */
+    boolean write(Document document, FileChannel out) throws IOException {
+        if (!isUtf8(document)) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (!isStampValid() || in.size() > Integer.MAX_VALUE) {
+                return false;
+            }
+            MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            XmlIndex index;
+            try {
+                index = XmlIndex.of(buffer);
+            } catch (IllegalStateException e) {
+                return false;
+            }
+            ChannelWriter writer = ChannelWriter.of(out);
+            Writer documentWriter = new Writer(index, in, out, writer);
+            Element root = document.getDocumentElement();
+            boolean written = index.hasName(0, root.getTagName())
+                    && documentWriter.copy(0, index.start(0))
+                    && documentWriter.element(root, 0)
+                    && documentWriter.copy(index.end(0), (int) in.size());
+            documentWriter.flushCopy();
+            writer.flush();
+            return written;
+        }
+    }
+
+    /**
+     * Forgets all modifications, taking the current content of the source file as the new reference.
+     */
+    void reset() {
+        originalChildren.clear();
+        attributesChanged.clear();
+        dirty.clear();
+        try {
+            stamp();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void markDirty(Element element) {
+        for (Node node = element; node instanceof Element && dirty.add((Element) node); node = node.getParentNode()) {
+            // walk up until reaching an element already marked
+        }
+    }
+
+    private void stamp() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        size = attributes.size();
+        lastModified = attributes.lastModifiedTime();
+    }
+
+    private boolean isStampValid() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        return attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+    }
+
+    private static boolean isUtf8(Document document) {
+        String encoding = document.getXmlEncoding() != null ? document.getXmlEncoding() : document.getInputEncoding();
+        if (encoding == null) {
+            encoding = (String) document.getUserData(StaxDomBuilder.ENCODING_KEY);
+        }
+        return encoding == null || "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding);
+    }
+
+    private final class Writer {
+
+        private final XmlIndex index;
+
+        private final FileChannel in;
+
+        private final FileChannel out;
+
+        private final ChannelWriter chars;
+
+        private final DomPrinter printer;
+
+        private int copyStart;  // source range to copy, pending so adjacent ranges are copied at once
+
+        private int copyEnd;
+
+        Writer(XmlIndex index, FileChannel in, FileChannel out, ChannelWriter chars) {
+            this.index = index;
+            this.in = in;
+            this.out = out;
+            this.chars = chars;
+            this.printer = new DomPrinter(chars, false);
+        }
+
+        /*
+         * Writes the specified original element, found at the specified position of the index.
+         */
+        boolean element(Element element, int position) throws IOException {
+            if (!dirty.contains(element)) {
+                return copy(index.start(position), index.end(position));
+            }
+            if (!index.hasName(position, element.getTagName())) {
+                return false;
+            }
+            List<Element> children = originalChildren.get(element);
+            if (index.isSelfClosing(position)) {  // no original content to keep
+                flushCopy();
+                LazySource.loadAll(element);
+                printer.printNode(element);
+                return true;
+            }
+            if (attributesChanged.contains(element)) {
+                flushCopy();
+                printer.printStartTag(element);
+            } else if (!copy(index.start(position), index.startTagEnd(position))) {
+                return false;
+            }
+            return children == null ? unchangedChildren(element, position) : changedChildren(element, position, children);
+        }
+
+        /*
+         * Text and children are as in the source : copies what lies between child elements.
+         */
+        private boolean unchangedChildren(Element element, int position) throws IOException {
+            int offset = index.startTagEnd(position);
+            int childPosition = index.firstChild(position);
+            for (Element child = DomUtils.firstChildElement(element); child != null;
+                 child = DomUtils.nextSiblingElement(child)) {
+                if (childPosition == XmlIndex.NONE || !copy(offset, index.start(childPosition))
+                        || !element(child, childPosition)) {
+                    return false;
+                }
+                offset = index.end(childPosition);
+                childPosition = index.nextSibling(childPosition);
+            }
+            return childPosition == XmlIndex.NONE && copy(offset, index.end(position));
+        }
+
+        /*
+         * Serializes the content, except child elements coming from the source.
+         */
+        private boolean changedChildren(Element element, int position, List<Element> children) throws IOException {
+            Map<Element, Integer> childPositions = new IdentityHashMap<>();
+            int childPosition = index.firstChild(position);
+            for (Element child : children) {
+                if (childPosition == XmlIndex.NONE) {
+                    return false;
+                }
+                childPositions.put(child, childPosition);
+                childPosition = index.nextSibling(childPosition);
+            }
+            if (childPosition != XmlIndex.NONE) {
+                return false;
+            }
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                Integer original = childPositions.get(child);
+                if (original == null) {
+                    flushCopy();
+                    LazySource.loadAll(child);
+                    printer.printNode(child);
+                } else if (!element((Element) child, original)) {
+                    return false;
+                }
+            }
+            return copy(index.endTagStart(position), index.end(position));
+        }
+
+        boolean copy(int start, int end) throws IOException {
+            if (start != copyEnd) {
+                flushCopy();
+                copyStart = start;
+            }
+            copyEnd = end;
+            return true;
+        }
+
+        void flushCopy() throws IOException {
+            if (copyStart == copyEnd) {
+                return;
+            }
+            chars.flushPending();
+            long position = copyStart;
+            while (position < copyEnd) {
+                position += in.transferTo(position, copyEnd - position, out);
+            }
+            copyStart = copyEnd;
+        }
+
+    }
+
+}
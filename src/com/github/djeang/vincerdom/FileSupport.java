@@ -0,0 +1,145 @@
+package com.github.djeang.vincerdom;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * File helpers shared by classes writing documents to disk.
+ */
+final class FileSupport {
+
+    private static final int MAX_LINKS = 40;
+
+    private static final Random RANDOM = new Random();
+
+    private FileSupport() {
+    }
+
+    interface FileWriter {
+
+        void write(Path file) throws IOException;
+
+    }
+
+    /**
+     * Returns the options to open a channel for writing, defaulting to the ones of
+     * {@link Files#newOutputStream(Path, OpenOption...)} when none are specified.
+     */
+    static Set<OpenOption> writeOptions(OpenOption... openOptions) {
+        Set<OpenOption> result = new HashSet<>(Arrays.asList(openOptions));
+        if (result.isEmpty()) {
+            result.add(StandardOpenOption.CREATE);
+            result.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        result.add(StandardOpenOption.WRITE);
+        return result;
+    }
+
+    /**
+     * Writes the specified target through a temporary file of the same directory, then renames it as the
+     * target. Readers of the target never see a partially written file. A symbolic link target is resolved, so
+     * the file it points to is replaced rather than the link. The permissions and owner of an existing target are
+     * kept, and a new target gets the default permissions of newly created files.
+     */
+    static void writeAtomically(Path target, FileWriter writer) {
+        Path absoluteTarget;
+        Path temp = null;
+        try {
+            absoluteTarget = resolveLinks(target.toAbsolutePath());
+            temp = createTempFile(absoluteTarget);
+            writer.write(temp);
+            if (Files.exists(absoluteTarget)) {
+                copyAttributes(absoluteTarget, temp);
+            }
+            try {
+                Files.move(temp, absoluteTarget, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteIfExists(temp);
+        }
+    }
+
+    private static Path resolveLinks(Path path) throws IOException {
+        Path result = path;
+        for (int i = 0; Files.isSymbolicLink(result); i++) {
+            if (i == MAX_LINKS) {
+                throw new FileSystemException(path.toString(), null, "Too many levels of symbolic links");
+            }
+            result = result.resolveSibling(Files.readSymbolicLink(result)).normalize();
+        }
+        return result;
+    }
+
+    // Not Files.createTempFile, which restricts permissions to the owner
+    private static Path createTempFile(Path target) throws IOException {
+        String prefix = "." + target.getFileName() + ".";
+        while (true) {
+            Path temp = target.resolveSibling(prefix + Long.toHexString(RANDOM.nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // try another name
+            }
+        }
+    }
+
+    private static void copyAttributes(Path source, Path target) throws IOException {
+        PosixFileAttributeView posixSource = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        PosixFileAttributeView posixTarget = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (posixSource != null && posixTarget != null) {
+            PosixFileAttributes attributes = posixSource.readAttributes();
+            posixTarget.setPermissions(attributes.permissions());
+            setOwnership(posixTarget, attributes);
+        }
+        AclFileAttributeView aclSource = Files.getFileAttributeView(source, AclFileAttributeView.class);
+        AclFileAttributeView aclTarget = Files.getFileAttributeView(target, AclFileAttributeView.class);
+        if (aclSource != null && aclTarget != null) {
+            aclTarget.setAcl(aclSource.getAcl());
+        }
+    }
+
+    // Changing owner needs privileges the process may lack : the file then belongs to the process user
+    private static void setOwnership(PosixFileAttributeView view, PosixFileAttributes attributes) {
+        try {
+            if (!attributes.group().equals(view.readAttributes().group())) {
+                view.setGroup(attributes.group());
+            }
+            if (!attributes.owner().equals(view.getOwner())) {
+                view.setOwner(attributes.owner());
+            }
+        } catch (IOException e) {
+            // keep the default ownership
+        }
+    }
+
+    private static void deleteIfExists(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
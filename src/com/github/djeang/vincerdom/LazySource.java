@@ -0,0 +1,112 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Source of a document whose elements are built only when navigated to, stored as user data of the document. <p>
+ * Elements whose content is not loaded yet have no children and hold their position in the source as user data.
+ * Loading an element builds its direct content only : text, comments and child elements with their attributes,
+ * these children being left unloaded in turn. <p>
+ * Navigation through {@link DomUtils#firstChildElement(Node)} loads elements on demand. Operations handing nodes
+ * to code unaware of laziness, as the W3C accessors, XPath or printing, load the whole subtree first : unloaded
+ * elements are then loaded with all their descendants at once.
+ */
+abstract class LazySource {
+
+    private static final String KEY = "vincerdom.lazySource";
+
+    private static final String POSITION_KEY = "vincerdom.lazyPosition";
+
+    private static volatile boolean active;  // true once a lazy document has been created, spares lookups before
+
+    // Elements whose content is not loaded yet. Elements detached before being loaded stay counted, which only
+    // costs walks that find nothing to load.
+    private int unloadedCount;
+
+    /**
+     * Builds the direct content of the specified node if it is an element not loaded yet. Returns
+     * <code>true</code> if some content has been built.
+     */
+    static boolean load(Node node) {
+        return load(node, false);
+    }
+
+    /**
+     * Builds the content of the specified node and of all its descendants. Does nothing, without walking the
+     * subtree, if the node belongs to a document which is not lazy or has no element left to load.
+     */
+    static void loadAll(Node node) {
+        if (!active || node == null) {
+            return;
+        }
+        LazySource source = of(node);
+        if (source == null || source.unloadedCount == 0) {  // documents not lazy or fully loaded are not walked
+            return;
+        }
+        Node current = node;
+        while (current != null && source.unloadedCount > 0) {
+            load(current, true);
+            Node next = current.getFirstChild();
+            while (next == null && current != node) {
+                next = current.getNextSibling();
+                current = current.getParentNode();
+            }
+            current = next;
+        }
+    }
+
+    private static boolean load(Node node, boolean deep) {
+        if (!active || node.getNodeType() != Node.ELEMENT_NODE) {
+            return false;
+        }
+        Integer position = (Integer) node.getUserData(POSITION_KEY);
+        if (position == null) {
+            return false;
+        }
+        node.setUserData(POSITION_KEY, null, null);
+        LazySource source = of(node);
+        source.unloadedCount--;
+        if (deep) {
+            source.loadSubtree((Element) node, position);
+        } else {
+            source.loadContent((Element) node, position);
+        }
+        return true;
+    }
+
+    private static LazySource of(Node node) {
+        Document document = node.getNodeType() == Node.DOCUMENT_NODE ? (Document) node : node.getOwnerDocument();
+        return (LazySource) document.getUserData(KEY);
+    }
+
+    /**
+     * Makes this source the one of the specified document.
+     */
+    final void attach(Document document) {
+        document.setUserData(KEY, this, null);
+        active = true;
+    }
+
+    /**
+     * Records that the content of the specified node, found at the specified position of the source, is
+     * not loaded yet.
+     */
+    final void markUnloaded(Node node, int position) {
+        node.setUserData(POSITION_KEY, position, null);
+        unloadedCount++;
+    }
+
+    /**
+     * Appends the direct content of the element found at the specified position to the specified element,
+     * marking child elements having content as unloaded.
+     */
+    abstract void loadContent(Element element, int position);
+
+    /**
+     * Appends the whole content of the element found at the specified position to the specified element.
+     */
+    abstract void loadSubtree(Element element, int position);
+
+}
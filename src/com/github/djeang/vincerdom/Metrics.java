@@ -0,0 +1,105 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Node;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the installed {@link VMetrics}. Callers check {@link #enabled()} before measuring, so nothing more
+ * than a field read is spent while {@link VMetrics#NONE} is installed.
+ */
+final class Metrics {
+
+    private static volatile VMetrics current = load();
+
+    private Metrics() {
+    }
+
+    static void install(VMetrics metrics) {
+        current = Objects.requireNonNull(metrics, "Use VMetrics.NONE to disable metrics.");
+    }
+
+    static VMetrics current() {
+        return current;
+    }
+
+    static boolean enabled() {
+        return current != VMetrics.NONE;
+    }
+
+    static void parsed(long startNanos, long bytes, Node document) {
+        current.parsed(System.nanoTime() - startNanos, bytes, countNodes(document));
+    }
+
+    private static long countNodes(Node document) {
+        long count = 0;
+        Node node = document;
+        while (node != null) {
+            count++;
+            Node next = node.getFirstChild();
+            while (next == null && node != null) {
+                next = node.getNextSibling();
+                node = node.getParentNode();
+            }
+            node = next;
+        }
+        return count;
+    }
+
+    static void printed(long startNanos, long bytes) {
+        current.printed(System.nanoTime() - startNanos, bytes);
+    }
+
+    private static VMetrics load() {
+        Iterator<VMetrics> iterator = ServiceLoader.load(VMetrics.class, Metrics.class.getClassLoader()).iterator();
+        return iterator.hasNext() ? iterator.next() : VMetrics.NONE;
+    }
+
+    /**
+     * Stream counting the bytes read through it.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            count += result;
+            return result;
+        }
+
+    }
+
+}
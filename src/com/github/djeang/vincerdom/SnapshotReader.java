@@ -0,0 +1,332 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.github.djeang.vincerdom.VSnapshot.CDATA;
+import static com.github.djeang.vincerdom.VSnapshot.COMMENT;
+import static com.github.djeang.vincerdom.VSnapshot.ELEMENT;
+import static com.github.djeang.vincerdom.VSnapshot.NONE;
+import static com.github.djeang.vincerdom.VSnapshot.PROCESSING_INSTRUCTION;
+import static com.github.djeang.vincerdom.VSnapshot.TEXT;
+
+/**
+ * Reads snapshot files written by {@link SnapshotWriter}. The file is mapped and its arrays are read in place,
+ * only the name table being decoded upfront. <p>
+ * As a {@link LazySource}, it builds W3C documents holding only the children of the document node, elements
+ * being built when navigated to. Element positions are node indices of the snapshot.
+ */
+final class SnapshotReader extends LazySource {
+
+    static final int HEADER_SIZE = 64;
+
+    private final ByteBuffer buffer;
+
+    private final IntBuffer names;
+
+    private final IntBuffer ends;
+
+    private final IntBuffer starts;
+
+    private final IntBuffer lengths;
+
+    private final IntBuffer attributeNames;
+
+    private final IntBuffer attributeValueStarts;
+
+    private final IntBuffer attributeValueLengths;
+
+    private final CharBuffer chars;
+
+    private final int nodeCount;
+
+    private final int attributeCount;
+
+    private final int charCount;
+
+    private final int kindsOffset;
+
+    private final String[] nameTable;
+
+    private SnapshotReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        nodeCount = buffer.getInt(32);
+        attributeCount = buffer.getInt(36);
+        int nameCount = buffer.getInt(40);
+        charCount = buffer.getInt(44);
+        int offset = HEADER_SIZE;
+        names = ints(offset, nodeCount);
+        ends = ints(offset += nodeCount * 4, nodeCount);
+        starts = ints(offset += nodeCount * 4, nodeCount);
+        lengths = ints(offset += nodeCount * 4, nodeCount);
+        attributeNames = ints(offset += nodeCount * 4, attributeCount);
+        attributeValueStarts = ints(offset += attributeCount * 4, attributeCount);
+        attributeValueLengths = ints(offset += attributeCount * 4, attributeCount);
+        IntBuffer nameStarts = ints(offset += attributeCount * 4, nameCount);
+        IntBuffer nameLengths = ints(offset += nameCount * 4, nameCount);
+        chars = slice(offset += nameCount * 4, charCount * 2).asCharBuffer();
+        kindsOffset = offset + charCount * 2;
+        if (kindsOffset + nodeCount != buffer.limit()) {
+            throw new IllegalStateException("Snapshot file is truncated or corrupted");
+        }
+        nameTable = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            nameTable[i] = SymbolTable.of(string(nameStarts.get(i), nameLengths.get(i)));
+        }
+    }
+
+    /**
+     * Maps the specified snapshot file.
+     *
+     * @throws IllegalStateException if the file is not a snapshot file of the current format version.
+     */
+    static SnapshotReader open(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalStateException(file + " is not a snapshot file");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != VSnapshot.MAGIC) {
+            throw new IllegalStateException(file + " is not a snapshot file");
+        }
+        if (buffer.getInt(4) != VSnapshot.VERSION) {
+            throw new IllegalStateException("Unsupported snapshot version " + buffer.getInt(4) + " in " + file);
+        }
+        return new SnapshotReader(buffer);
+    }
+
+    /**
+     * Returns the size, last modification time in milliseconds and checksum of the source file recorded in the
+     * specified snapshot file header, or <code>null</code> if the file is not a snapshot file of the current
+     * format version.
+     */
+    static long[] readStamp(Path file) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (header.hasRemaining() || header.getInt(0) != VSnapshot.MAGIC || header.getInt(4) != VSnapshot.VERSION) {
+            return null;
+        }
+        return new long[] {header.getLong(8), header.getLong(16), header.getLong(24)};
+    }
+
+    /**
+     * Builds a W3C document whose elements are loaded on demand from this snapshot.
+     */
+    Document toDocument() {
+        Document document = VXmlPool.documentBuilder().newDocument();
+        document.setStrictErrorChecking(false);
+        int version = buffer.getInt(48);
+        if (version != NONE) {
+            document.setXmlVersion(nameTable[version]);
+        }
+        int encoding = buffer.getInt(52);
+        if (encoding != NONE) {
+            document.setUserData(StaxDomBuilder.ENCODING_KEY, nameTable[encoding], null);
+        }
+        document.setXmlStandalone(buffer.getInt(56) == 1);
+        attach(document);
+        children(document, document, 0, false);
+        document.setStrictErrorChecking(true);
+        return document;
+    }
+
+    @Override
+    void loadContent(Element element, int position) {
+        build(element, position, false);
+    }
+
+    @Override
+    void loadSubtree(Element element, int position) {
+        build(element, position, true);
+    }
+
+    /**
+     * Converts the root element subtree of this snapshot to a {@link VCompactDocument}, which keeps elements
+     * and text only.
+     */
+    VCompactDocument toCompactDocument() {
+        int root = 1;
+        while (root < nodeCount && kind(root) != ELEMENT) {
+            root = ends.get(root) + 1;
+        }
+        if (root >= nodeCount) {
+            throw new IllegalArgumentException("Document has no root element");
+        }
+        int end = ends.get(root);
+        int count = 0;
+        for (int node = root; node <= end; node++) {
+            byte kind = kind(node);
+            if (kind == ELEMENT || kind == TEXT || kind == CDATA) {
+                count++;
+            }
+        }
+        byte[] kinds = new byte[count];
+        int[] compactNames = new int[count];
+        int[] parents = new int[count];
+        int[] firstChildren = new int[count];
+        int[] nextSiblings = new int[count];
+        int[] compactStarts = new int[count];
+        int[] compactLengths = new int[count];
+        int[] openElements = new int[16];  // compact ids of the elements enclosing the current node
+        int[] openEnds = new int[16];
+        int[] lastChildren = new int[16];
+        int depth = 0;
+        int id = 0;
+        for (int node = root; node <= end; node++) {
+            while (depth > 0 && node > openEnds[depth - 1]) {
+                depth--;
+            }
+            byte kind = kind(node);
+            if (kind != ELEMENT && kind != TEXT && kind != CDATA) {
+                continue;
+            }
+            boolean element = kind == ELEMENT;
+            kinds[id] = element ? VCompactDocument.ELEMENT : VCompactDocument.TEXT;
+            compactNames[id] = element ? names.get(node) : VCompactDocument.NONE;
+            compactStarts[id] = starts.get(node);
+            compactLengths[id] = lengths.get(node);
+            firstChildren[id] = VCompactDocument.NONE;
+            nextSiblings[id] = VCompactDocument.NONE;
+            if (depth == 0) {
+                parents[id] = VCompactDocument.NONE;
+            } else {
+                int parent = openElements[depth - 1];
+                parents[id] = parent;
+                if (lastChildren[depth - 1] == VCompactDocument.NONE) {
+                    firstChildren[parent] = id;
+                } else {
+                    nextSiblings[lastChildren[depth - 1]] = id;
+                }
+                lastChildren[depth - 1] = id;
+            }
+            if (element) {
+                if (depth == openElements.length) {
+                    openElements = Arrays.copyOf(openElements, depth * 2);
+                    openEnds = Arrays.copyOf(openEnds, depth * 2);
+                    lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+                }
+                openElements[depth] = id;
+                openEnds[depth] = ends.get(node);
+                lastChildren[depth] = VCompactDocument.NONE;
+                depth++;
+            }
+            id++;
+        }
+        return new VCompactDocument(kinds, compactNames, parents, firstChildren, nextSiblings, compactStarts,
+                compactLengths, nameTable, toArray(attributeNames, attributeCount),
+                toArray(attributeValueStarts, attributeCount), toArray(attributeValueLengths, attributeCount),
+                toArray(chars, charCount));
+    }
+
+    private void build(Element element, int position, boolean deep) {
+        Document document = element.getOwnerDocument();
+        boolean strictErrorChecking = document.getStrictErrorChecking();
+        document.setStrictErrorChecking(false);
+        try {
+            children(document, element, position, deep);
+        } finally {
+            document.setStrictErrorChecking(strictErrorChecking);
+        }
+    }
+
+    private void children(Document document, Node parent, int position, boolean deep) {
+        int end = ends.get(position);
+        for (int node = position + 1; node <= end; node = ends.get(node) + 1) {
+            Node child = node(document, node);
+            parent.appendChild(child);
+            if (child.getNodeType() == Node.ELEMENT_NODE && ends.get(node) > node) {
+                if (deep) {
+                    children(document, child, node, true);
+                } else {
+                    markUnloaded(child, node);
+                }
+            }
+        }
+    }
+
+    private Node node(Document document, int node) {
+        switch (kind(node)) {
+            case ELEMENT:
+                Element element = document.createElement(nameTable[names.get(node)]);
+                int attributeEnd = starts.get(node) + lengths.get(node);
+                for (int i = starts.get(node); i < attributeEnd; i++) {
+                    element.setAttribute(nameTable[attributeNames.get(i)],
+                            string(attributeValueStarts.get(i), attributeValueLengths.get(i)));
+                }
+                return element;
+            case TEXT:
+                return document.createTextNode(text(node));
+            case CDATA:
+                return document.createCDATASection(text(node));
+            case COMMENT:
+                return document.createComment(text(node));
+            case PROCESSING_INSTRUCTION:
+                return document.createProcessingInstruction(nameTable[names.get(node)], text(node));
+            default:
+                throw new IllegalStateException("Unexpected node kind " + kind(node) + " in snapshot");
+        }
+    }
+
+    private byte kind(int node) {
+        return buffer.get(kindsOffset + node);
+    }
+
+    private String text(int node) {
+        return string(starts.get(node), lengths.get(node));
+    }
+
+    private String string(int start, int length) {
+        char[] result = new char[length];
+        CharBuffer view = chars.duplicate();
+        view.position(start);
+        view.get(result);
+        return new String(result);
+    }
+
+    private IntBuffer ints(int offset, int count) {
+        return slice(offset, count * 4).asIntBuffer();
+    }
+
+    private ByteBuffer slice(int offset, int size) {
+        ByteBuffer result = buffer.duplicate();
+        result.position(offset).limit(offset + size);
+        return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int[] toArray(IntBuffer buffer, int count) {
+        int[] result = new int[count];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    private static char[] toArray(CharBuffer buffer, int count) {
+        char[] result = new char[count];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+}
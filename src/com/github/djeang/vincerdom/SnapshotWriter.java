@@ -0,0 +1,336 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.djeang.vincerdom.VSnapshot.CDATA;
+import static com.github.djeang.vincerdom.VSnapshot.COMMENT;
+import static com.github.djeang.vincerdom.VSnapshot.DOCUMENT;
+import static com.github.djeang.vincerdom.VSnapshot.ELEMENT;
+import static com.github.djeang.vincerdom.VSnapshot.NONE;
+import static com.github.djeang.vincerdom.VSnapshot.PROCESSING_INSTRUCTION;
+import static com.github.djeang.vincerdom.VSnapshot.TEXT;
+
+/**
+ * Writes W3C documents in the snapshot format described in {@link VSnapshot}. Nodes are numbered in document
+ * order, the document node being 0. Document type declarations are not kept, and entity references are replaced
+ * by their content.
+ */
+final class SnapshotWriter {
+
+    private static final int MAX_SHARED_WHITESPACE = 128;
+
+    private int nodeCount;
+
+    private byte[] kinds = new byte[256];
+
+    private int[] names = new int[256];
+
+    private int[] ends = new int[256];  // last node of the subtree
+
+    private int[] starts = new int[256];  // first attribute index for elements, first char index otherwise
+
+    private int[] lengths = new int[256];  // attribute count for elements, char count otherwise
+
+    private int attributeCount;
+
+    private int[] attributeNames = new int[64];
+
+    private int[] attributeValueStarts = new int[64];
+
+    private int[] attributeValueLengths = new int[64];
+
+    private final List<String> nameTable = new ArrayList<>();
+
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    private final Map<String, Integer> whitespaceStarts = new HashMap<>();
+
+    private int charCount;
+
+    private char[] chars = new char[4096];
+
+    private SnapshotWriter() {
+    }
+
+    /**
+     * Writes the specified document to the specified file, along with the specified stamp of its source file.
+     */
+    static void write(Document document, Path file, long sourceSize, long sourceModified, long sourceChecksum)
+            throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.node(document, false);
+        writer.writeFile(document, file, sourceSize, sourceModified, sourceChecksum);
+    }
+
+    /**
+     * Replaces the source file modification time recorded in the specified snapshot file. The header is
+     * rewritten in place : readers seeing a partial write find a stale time and fall back to the checksum.
+     * Does nothing if the file cannot be written.
+     */
+    static void restamp(Path file, long sourceModified) {
+        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(sourceModified).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, 16 + buffer.position());
+            }
+        } catch (IOException e) {
+            // read-only snapshot : the checksum keeps being compared
+        }
+    }
+
+    private void node(Node node, boolean inDocument) {
+        switch (node.getNodeType()) {
+            case Node.DOCUMENT_NODE:
+                children(newNode(DOCUMENT, NONE), node, true);
+                break;
+            case Node.ELEMENT_NODE:
+                int element = newNode(ELEMENT, nameId(((Element) node).getTagName()));
+                attributes(element, node.getAttributes());
+                children(element, node, false);
+                break;
+            case Node.TEXT_NODE:
+                if (!inDocument) {
+                    text(newNode(TEXT, NONE), node.getNodeValue());
+                }
+                break;
+            case Node.CDATA_SECTION_NODE:
+                text(newNode(CDATA, NONE), node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                text(newNode(COMMENT, NONE), node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                text(newNode(PROCESSING_INSTRUCTION, nameId(node.getNodeName())), node.getNodeValue());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    node(child, inDocument);
+                }
+                break;
+            default:  // document type
+                break;
+        }
+    }
+
+    private void children(int id, Node node, boolean document) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            node(child, document);
+        }
+        ends[id] = nodeCount - 1;
+    }
+
+    private void attributes(int element, NamedNodeMap attributes) {
+        starts[element] = attributeCount;
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (!attribute.getSpecified()) {
+                continue;
+            }
+            if (attributeCount == attributeNames.length) {
+                int size = attributeCount * 2;
+                attributeNames = Arrays.copyOf(attributeNames, size);
+                attributeValueStarts = Arrays.copyOf(attributeValueStarts, size);
+                attributeValueLengths = Arrays.copyOf(attributeValueLengths, size);
+            }
+            String value = attribute.getValue();
+            attributeNames[attributeCount] = nameId(attribute.getName());
+            attributeValueStarts[attributeCount] = appendChars(value);
+            attributeValueLengths[attributeCount] = value.length();
+            attributeCount++;
+        }
+        lengths[element] = attributeCount - starts[element];
+    }
+
+    private void text(int id, String value) {
+        starts[id] = value.length() <= MAX_SHARED_WHITESPACE && isWhitespace(value)
+                ? whitespaceStart(value) : appendChars(value);
+        lengths[id] = value.length();
+    }
+
+    // Indentation is stored once per distinct value as it makes up a large share of pretty-printed documents
+    private int whitespaceStart(String value) {
+        Integer start = whitespaceStarts.get(value);
+        if (start == null) {
+            start = appendChars(value);
+            whitespaceStarts.put(value, start);
+        }
+        return start;
+    }
+
+    private int newNode(byte kind, int name) {
+        if (nodeCount == kinds.length) {
+            int size = nodeCount * 2;
+            kinds = Arrays.copyOf(kinds, size);
+            names = Arrays.copyOf(names, size);
+            ends = Arrays.copyOf(ends, size);
+            starts = Arrays.copyOf(starts, size);
+            lengths = Arrays.copyOf(lengths, size);
+        }
+        int node = nodeCount++;
+        kinds[node] = kind;
+        names[node] = name;
+        ends[node] = node;
+        return node;
+    }
+
+    private int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = nameTable.size();
+            nameTable.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private int appendChars(String value) {
+        int start = charCount;
+        if (charCount + value.length() > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + value.length()));
+        }
+        value.getChars(0, value.length(), chars, charCount);
+        charCount += value.length();
+        return start;
+    }
+
+    private static boolean isWhitespace(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeFile(Document document, Path file, long sourceSize, long sourceModified, long sourceChecksum)
+            throws IOException {
+        String encoding = document.getXmlEncoding() != null ? document.getXmlEncoding() : document.getInputEncoding();
+        if (encoding == null) {
+            encoding = (String) document.getUserData(StaxDomBuilder.ENCODING_KEY);
+        }
+        int versionId = document.getXmlVersion() == null ? NONE : nameId(document.getXmlVersion());
+        int encodingId = encoding == null ? NONE : nameId(encoding);
+        int[] nameStarts = new int[nameTable.size()];
+        int[] nameLengths = new int[nameTable.size()];
+        for (int i = 0; i < nameStarts.length; i++) {
+            nameStarts[i] = appendChars(nameTable.get(i));
+            nameLengths[i] = nameTable.get(i).length();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(VSnapshot.MAGIC);
+            out.putInt(VSnapshot.VERSION);
+            out.putLong(sourceSize);
+            out.putLong(sourceModified);
+            out.putLong(sourceChecksum);
+            out.putInt(nodeCount);
+            out.putInt(attributeCount);
+            out.putInt(nameTable.size());
+            out.putInt(charCount);
+            out.putInt(versionId);
+            out.putInt(encodingId);
+            out.putInt(document.getXmlStandalone() ? 1 : 0);
+            out.putInt(0);
+            out.putInts(names, nodeCount);
+            out.putInts(ends, nodeCount);
+            out.putInts(starts, nodeCount);
+            out.putInts(lengths, nodeCount);
+            out.putInts(attributeNames, attributeCount);
+            out.putInts(attributeValueStarts, attributeCount);
+            out.putInts(attributeValueLengths, attributeCount);
+            out.putInts(nameStarts, nameStarts.length);
+            out.putInts(nameLengths, nameLengths.length);
+            out.putChars(chars, charCount);
+            out.putBytes(kinds, nodeCount);
+            out.flush();
+        }
+    }
+
+    /*
+     * Little endian output to a channel through a fixed size buffer.
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(8);
+            buffer.putLong(value);
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensureRemaining(4);
+                int length = Math.min(count - offset, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, offset, length);
+                buffer.position(buffer.position() + length * 4);
+                offset += length;
+            }
+        }
+
+        void putChars(char[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensureRemaining(2);
+                int length = Math.min(count - offset, buffer.remaining() / 2);
+                buffer.asCharBuffer().put(values, offset, length);
+                buffer.position(buffer.position() + length * 2);
+                offset += length;
+            }
+        }
+
+        void putBytes(byte[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensureRemaining(1);
+                int length = Math.min(count - offset, buffer.remaining());
+                buffer.put(values, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+    }
+
+}
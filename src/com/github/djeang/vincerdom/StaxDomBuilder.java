@@ -0,0 +1,231 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Builds W3C documents from StAX events, for {@link VParseEngine#STAX}. <p>
+ * Each thread has its own reader factory, not coalescing text, so CDATA sections are kept, and reusing its reader
+ * from one parse to the next where the implementation allows it, which saves the reader setup on small documents.
+ * Nodes are created with error checking off, as the parser already checked names and nesting. Adjacent text
+ * events are gathered before creating a single text node, instead of appending to an existing node.
+ */
+final class StaxDomBuilder {
+
+    /**
+     * Key of the document user data holding the encoding of the parsed source, which documents not built by
+     * the parser of the DOM implementation do not know.
+     */
+    static final String ENCODING_KEY = "vincerdom.encoding";
+
+    private static final String REUSE_INSTANCE = "reuse-instance";  // JDK implementation specific
+
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES = new ThreadLocal<>();
+
+    private final Document document;
+
+    private final Node top;  // node receiving the content, the document unless parsing a fragment
+
+    private Node current;
+
+    private String text;  // pending text, when a single event came
+
+    private StringBuilder textBuilder;  // pending text, when several events came
+
+    private BufferedInputStream prologStream;  // marked at its start until the root element, when parsing a document
+
+    private boolean hasDocumentType;
+
+    private StaxDomBuilder(Document document, Node top) {
+        this.document = document;
+        this.top = top;
+        this.current = top;
+    }
+
+    /**
+     * Parses the specified stream, which is not closed. Documents declaring a document type are parsed again
+     * by the pooled {@link javax.xml.parsers.DocumentBuilder}, as the StAX reader does not apply the attribute
+     * defaults of the DTD reliably : the stream is buffered up to the root element for that purpose.
+     */
+    static Document parse(InputStream inputStream) {
+        BufferedInputStream prologStream = new BufferedInputStream(inputStream);
+        prologStream.mark(Integer.MAX_VALUE);
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory().createXMLStreamReader(prologStream);
+            Document document = VXmlPool.documentBuilder().newDocument();
+            document.setStrictErrorChecking(false);
+            StaxDomBuilder builder = new StaxDomBuilder(document, document);
+            builder.prologStream = prologStream;
+            builder.build(reader);
+            if (builder.hasDocumentType) {
+                close(reader);
+                reader = null;
+                prologStream.reset();
+                return VXmlPool.documentBuilder().parse(prologStream);
+            }
+            document.setStrictErrorChecking(true);
+            return document;
+        } catch (XMLStreamException | SAXException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Parses the specified stream, made of a single wrapping element, and appends the content of this element
+     * to the specified parent. The stream is not closed.
+     */
+    static void parseContent(InputStream inputStream, String encoding, Element parent) {
+        Document document = parent.getOwnerDocument();
+        boolean strictErrorChecking = document.getStrictErrorChecking();
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory().createXMLStreamReader(inputStream, encoding);
+            reader.nextTag();
+            document.setStrictErrorChecking(false);
+            new StaxDomBuilder(document, parent).build(reader);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            document.setStrictErrorChecking(strictErrorChecking);
+            close(reader);
+        }
+    }
+
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = INPUT_FACTORIES.get();
+        if (factory == null) {
+            factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+            if (factory.isPropertySupported(REUSE_INSTANCE)) {
+                factory.setProperty(REUSE_INSTANCE, true);
+            }
+            if (factory.isPropertySupported(REPORT_CDATA)) {
+                factory.setProperty(REPORT_CDATA, true);
+            }
+            INPUT_FACTORIES.set(factory);
+        }
+        return factory;
+    }
+
+    private void build(XMLStreamReader reader) throws XMLStreamException {
+        if (top == document) {
+            prolog(reader);
+        }
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                if (current != document) {
+                    addText(reader.getText());
+                }
+                continue;
+            }
+            flushText();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (prologStream != null) {
+                        prologStream.mark(0);  // no document type : the prolog need not be kept
+                        prologStream = null;
+                    }
+                    Element element = document.createElement(StaxSupport.name(reader));
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        element.setAttribute(StaxSupport.attributeName(reader, i), reader.getAttributeValue(i));
+                    }
+                    current.appendChild(element);
+                    current = element;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (current == top) {  // end of the wrapping element of a fragment
+                        return;
+                    }
+                    current = current.getParentNode();
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+                            reader.getPIData()));
+                    break;
+                case XMLStreamConstants.DTD:
+                    if (prologStream != null) {
+                        hasDocumentType = true;
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    current.appendChild(document.createEntityReference(reader.getLocalName()));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void prolog(XMLStreamReader reader) {
+        if (reader.getVersion() != null) {
+            document.setXmlVersion(reader.getVersion());
+        }
+        if (reader.standaloneSet()) {
+            document.setXmlStandalone(reader.isStandalone());
+        }
+        if (reader.getEncoding() != null) {
+            document.setUserData(ENCODING_KEY, reader.getEncoding(), null);
+        }
+    }
+
+    private void addText(String value) {
+        if (text == null && textBuilder == null) {
+            text = value;
+        } else {
+            if (textBuilder == null) {
+                textBuilder = new StringBuilder(text);
+                text = null;
+            }
+            textBuilder.append(value);
+        }
+    }
+
+    private void flushText() {
+        if (text != null) {
+            current.appendChild(document.createTextNode(text));
+            text = null;
+        } else if (textBuilder != null) {
+            current.appendChild(document.createTextNode(textBuilder.toString()));
+            textBuilder = null;
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
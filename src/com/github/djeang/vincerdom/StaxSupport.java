@@ -0,0 +1,232 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers shared by the StAX based classes to convert between W3C nodes and stream events.
+ */
+final class StaxSupport {
+
+    private StaxSupport() {
+    }
+
+    /**
+     * Splits an absolute path as <code>/project/dependencies/dependency</code> into its segments.
+     */
+    static String[] parsePath(String path) {
+        if (!path.startsWith("/") || path.length() == 1 || path.endsWith("/") || path.contains("//")) {
+            throw new IllegalArgumentException("Path must be absolute as /project/dependencies/dependency but was "
+                    + path);
+        }
+        return path.substring(1).split("/");
+    }
+
+    /**
+     * Returns <code>true</code> if the specified element stack matches exactly the specified path segments.
+     */
+    static boolean matches(List<String> stack, String[] segments) {
+        if (stack.size() != segments.length) {
+            return false;
+        }
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (!segments[i].equals(stack.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the handler registered for the path matching exactly the specified element stack,
+     * or <code>null</code> if there is none.
+     */
+    static <T> T handler(Map<String[], T> handlers, List<String> stack) {
+        for (Map.Entry<String[], T> entry : handlers.entrySet()) {
+            if (matches(stack, entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the qualified name of the current element of the specified reader.
+     */
+    static String name(XMLStreamReader reader) {
+        return qualifiedName(reader.getPrefix(), reader.getLocalName());
+    }
+
+    /**
+     * Returns the qualified name of the attribute at the specified index on the specified reader.
+     */
+    static String attributeName(XMLStreamReader reader, int index) {
+        return qualifiedName(reader.getAttributePrefix(index), reader.getAttributeLocalName(index));
+    }
+
+    /**
+     * Builds the element the specified reader is positioned on, along with its whole subtree, in the specified
+     * document. The returned element is not attached. On return, the reader is positioned on the matching
+     * end element event.
+     */
+    static Element readElement(XMLStreamReader reader, Document document) throws XMLStreamException {
+        Element top = startElement(reader, document);
+        List<Element> stack = new ArrayList<>();
+        Element current = top;
+        while (true) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element child = startElement(reader, document);
+                    current.appendChild(child);
+                    stack.add(current);
+                    current = child;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (stack.isEmpty()) {
+                        return top;
+                    }
+                    current = stack.remove(stack.size() - 1);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    appendText(current, reader.getText());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+                            reader.getPIData()));
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    current.appendChild(document.createEntityReference(reader.getLocalName()));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Copies the current event of the specified reader, other than document or element start, to the specified
+     * writer.
+     */
+    static void copyEvent(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        switch (reader.getEventType()) {
+            case XMLStreamConstants.END_ELEMENT:
+                writer.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            case XMLStreamConstants.CDATA:
+                writer.writeCData(reader.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                writer.writeComment(reader.getText());
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                writer.writeEntityRef(reader.getLocalName());
+                break;
+            case XMLStreamConstants.DTD:
+                writer.writeDTD(reader.getText());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                writer.writeEndDocument();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Element startElement(XMLStreamReader reader, Document document) {
+        Element element = document.createElement(name(reader));
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttribute(attributeName(reader, i), reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private static void appendText(Element element, String text) {
+        Node last = element.getLastChild();
+        if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+            ((Text) last).appendData(text);
+        } else {
+            element.appendChild(element.getOwnerDocument().createTextNode(text));
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return SymbolTable.of(prefix + ":" + localName);
+    }
+
+    /**
+     * Writes the specified node and its subtree to the specified writer.
+     */
+    static void writeNode(Node node, XMLStreamWriter writer) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                Element element = (Element) node;
+                if (element.hasChildNodes()) {
+                    writer.writeStartElement(element.getTagName());
+                } else {
+                    writer.writeEmptyElement(element.getTagName());
+                }
+                NamedNodeMap attributes = element.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attr = (Attr) attributes.item(i);
+                    writer.writeAttribute(attr.getName(), attr.getValue());
+                }
+                if (element.hasChildNodes()) {
+                    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        writeNode(child, writer);
+                    }
+                    writer.writeEndElement();
+                }
+                break;
+            case Node.TEXT_NODE:
+                writer.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.writeCData(node.getNodeValue());
+                break;
+            case Node.COMMENT_NODE:
+                writer.writeComment(node.getNodeValue());
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                ProcessingInstruction pi = (ProcessingInstruction) node;
+                writer.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                writer.writeEntityRef(node.getNodeName());
+                break;
+            default:
+                break;
+        }
+    }
+
+}
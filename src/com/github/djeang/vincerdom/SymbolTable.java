@@ -0,0 +1,51 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Element;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of element and attribute names, shared by all documents. <p>
+ * Canonical instances are the ones of {@link String#intern()}, which are also the ones the JDK parsers give
+ * to the names they read. So names of parsed documents, of elements added through {@link VElement} and of
+ * lookups are the same instances, stored once and compared by reference. The table is a cache in front of
+ * {@link String#intern()}, bounded so that documents with generated names cannot grow it without limit.
+ */
+final class SymbolTable {
+
+    static final int MAX_SIZE = 4096;
+
+    private static final ConcurrentHashMap<String, String> SYMBOLS = new ConcurrentHashMap<>(256);
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Returns the canonical instance of the specified name.
+     */
+    static String of(String name) {
+        String symbol = SYMBOLS.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        symbol = name.intern();
+        if (SYMBOLS.size() < MAX_SIZE) {
+            SYMBOLS.putIfAbsent(symbol, symbol);
+        }
+        return symbol;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified element has the specified name. Matching names are decided by
+     * reference when the name is canonical.
+     */
+    static boolean hasName(Element element, String name) {
+        String tagName = element.getTagName();
+        return tagName == name || name.equals(tagName);
+    }
+
+    static int size() {
+        return SYMBOLS.size();
+    }
+
+}
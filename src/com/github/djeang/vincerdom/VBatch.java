@@ -0,0 +1,261 @@
+package com.github.djeang.vincerdom;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Parses, edits and saves many files in parallel. <p>
+ * Each file is handled by a single task : parse, call the editing function, then save in place. Parsers and
+ * serializers are reused across files through the per-thread pool of {@link VXmlPool}, so executors running
+ * on a fixed set of threads get the most of it. By default, each batch runs on its own pool of daemon threads,
+ * one per file slot, so blocking file I/O never occupies the threads of {@link ForkJoinPool#commonPool()}. <p>
+ * The number of files being processed at once is bounded, which bounds open file handles and documents held
+ * in memory : submission blocks until a slot is free. A failure on a file is recorded in the returned
+ * {@link Report} without stopping the batch.
+ * <pre><code>
+ * VBatch.Report report = VBatch.of().run(pomFiles, doc -&gt; doc.root().get("version").text("1.0"));
+ * report.failures().forEach((path, e) -&gt; System.err.println(path + " : " + e));
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VBatch {
+
+    private Executor executor;  // null for a pool dedicated to each batch
+
+    private int maxOpenFiles = Runtime.getRuntime().availableProcessors() * 2;
+
+    private boolean atomicSave;
+
+    private VBatch() {
+    }
+
+    /**
+     * Creates a batch running on its own pool of daemon threads, with at most twice as many files in process as
+     * there are processors.
+     */
+    public static VBatch of() {
+        return new VBatch();
+    }
+
+    /**
+     * Sets the executor running the tasks. Prefer executors reusing a fixed set of threads : with a virtual
+     * thread executor, each task runs in its own thread, so parsers and output buffers are created again
+     * for every file. {@link ForkJoinPool#commonPool()} can be used as well, though file I/O then holds its
+     * threads, which parallel streams and asynchronous tasks of the application share.
+     */
+    public VBatch executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of files being processed at once, which is also the number of threads of the
+     * default pool.
+     */
+    public VBatch maxOpenFiles(int maxOpenFiles) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("maxOpenFiles must be at least 1 but was " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        return this;
+    }
+
+    /**
+     * If <code>true</code>, edited files are saved with {@link VDocument#saveAtomically()}. Default is
+     * <code>false</code>.
+     */
+    public VBatch atomicSave(boolean atomicSave) {
+        this.atomicSave = atomicSave;
+        return this;
+    }
+
+    /**
+     * Parses each of the specified files, passes it to the specified editor, then saves it in place.
+     * Returns once all files have been processed.
+     */
+    public Report run(Collection<Path> files, Consumer<VDocument> editor) {
+        return process(files, editor, true);
+    }
+
+    /**
+     * Same as {@link #run(Collection, Consumer)} but without saving files, for read only processing.
+     */
+    public Report forEach(Collection<Path> files, Consumer<VDocument> reader) {
+        return process(files, reader, false);
+    }
+
+    private Report process(Collection<Path> files, Consumer<VDocument> consumer, boolean save) {
+        long start = System.nanoTime();
+        Semaphore slots = new Semaphore(maxOpenFiles);
+        Map<Path, Throwable> failures = new ConcurrentHashMap<>();
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicLong byteCount = new AtomicLong();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+        ExecutorService batchExecutor = executor == null ? newBatchExecutor() : null;
+        Executor runner = executor == null ? batchExecutor : executor;
+        try {
+            for (Path file : files) {
+                acquire(slots);
+                Runnable task = () -> {
+                    try {
+                        long size = Files.size(file);
+                        VDocument doc = VDocument.parse(file);
+                        byteCount.addAndGet(size);
+                        consumer.accept(doc);
+                        if (save && atomicSave) {
+                            doc.saveAtomically();
+                        } else if (save) {
+                            doc.save();
+                        }
+                        successCount.incrementAndGet();
+                    } catch (IOException e) {
+                        failures.put(file, new UncheckedIOException(e));
+                    } catch (Throwable e) {  // errors raised by the editor, as AssertionError, must not abort the batch
+                        failures.put(file, e);
+                    } finally {
+                        slots.release();
+                    }
+                };
+                try {
+                    futures.add(CompletableFuture.runAsync(task, runner));
+                } catch (RuntimeException e) {  // rejected by the executor
+                    failures.put(file, e);
+                    slots.release();
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            if (batchExecutor != null) {
+                batchExecutor.shutdown();
+            }
+        }
+        Map<Path, Throwable> orderedFailures = new LinkedHashMap<>();
+        for (Path file : files) {
+            Throwable failure = failures.get(file);
+            if (failure != null) {
+                orderedFailures.put(file, failure);
+            }
+        }
+        return new Report(files.size(), successCount.get(), orderedFailures, byteCount.get(),
+                System.nanoTime() - start);
+    }
+
+    private ExecutorService newBatchExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxOpenFiles, runnable -> {
+            Thread thread = new Thread(runnable, "vincer-dom-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a file slot", e);
+        }
+    }
+
+    /**
+     * Outcome and throughput statistics of a batch.
+     */
+    public static final class Report {
+
+        private final int fileCount;
+
+        private final int successCount;
+
+        private final Map<Path, Throwable> failures;
+
+        private final long byteCount;
+
+        private final long elapsedNanos;
+
+        private Report(int fileCount, int successCount, Map<Path, Throwable> failures, long byteCount,
+                       long elapsedNanos) {
+            this.fileCount = fileCount;
+            this.successCount = successCount;
+            this.failures = Collections.unmodifiableMap(failures);
+            this.byteCount = byteCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the number of files submitted.
+         */
+        public int fileCount() {
+            return fileCount;
+        }
+
+        /**
+         * Returns the number of files processed without error.
+         */
+        public int successCount() {
+            return successCount;
+        }
+
+        /**
+         * Returns the error raised for each failed file, in submission order.
+         */
+        public Map<Path, Throwable> failures() {
+            return failures;
+        }
+
+        /**
+         * Returns the total size of the files successfully parsed, in bytes.
+         */
+        public long byteCount() {
+            return byteCount;
+        }
+
+        /**
+         * Returns the wall-clock time taken by the batch, in nanoseconds.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the number of files processed per second.
+         */
+        public double filesPerSecond() {
+            return elapsedNanos == 0 ? 0 : fileCount * 1_000_000_000d / elapsedNanos;
+        }
+
+        /**
+         * Returns the number of bytes read per second.
+         */
+        public double bytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : byteCount * 1_000_000_000d / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files (%d failed) in %d ms : %.1f files/s, %.1f KB/s", fileCount,
+                    failures.size(), elapsedNanos / 1_000_000, filesPerSecond(), bytesPerSecond() / 1024);
+        }
+
+    }
+
+}
@@ -0,0 +1,456 @@
+package com.github.djeang.vincerdom;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only document backed by a compact array based structure, for looking up values in large documents
+ * that are never modified. <p>
+ * Elements and text nodes are stored as indices in a handful of <code>int[]</code> arrays, names are stored
+ * once and all text and attribute values share a single <code>char[]</code>. This takes a fraction of the
+ * heap used by a W3C document. Comments and processing instructions are not kept. <p>
+ * Instances are immutable, hence safe to share across threads.
+ * <pre><code>
+ * VCompactDocument catalog = VCompactDocument.parse(Paths.get("catalog.xml"));
+ * String price = catalog.root().get("products/product").attr("price");
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VCompactDocument {
+
+    static final byte ELEMENT = 0;
+
+    static final byte TEXT = 1;
+
+    static final int NONE = -1;
+
+    final byte[] kinds;
+
+    final int[] names;  // index in nameTable for elements, NONE for text nodes
+
+    final int[] parents;
+
+    final int[] firstChildren;
+
+    final int[] nextSiblings;
+
+    final int[] starts;  // first attribute index for elements, first char index for text nodes
+
+    final int[] lengths;  // attribute count for elements, char count for text nodes
+
+    final String[] nameTable;
+
+    private final Map<String, Integer> nameIds;
+
+    final int[] attributeNames;
+
+    final int[] attributeValueStarts;
+
+    final int[] attributeValueLengths;
+
+    final char[] chars;
+
+    private VCompactDocument(Builder builder) {
+        int count = builder.nodeCount;
+        this.kinds = Arrays.copyOf(builder.kinds, count);
+        this.names = Arrays.copyOf(builder.names, count);
+        this.parents = Arrays.copyOf(builder.parents, count);
+        this.firstChildren = Arrays.copyOf(builder.firstChildren, count);
+        this.nextSiblings = Arrays.copyOf(builder.nextSiblings, count);
+        this.starts = Arrays.copyOf(builder.starts, count);
+        this.lengths = Arrays.copyOf(builder.lengths, count);
+        this.nameTable = builder.nameTable.toArray(new String[0]);
+        this.nameIds = builder.nameIds;
+        int attributeCount = builder.attributeCount;
+        this.attributeNames = Arrays.copyOf(builder.attributeNames, attributeCount);
+        this.attributeValueStarts = Arrays.copyOf(builder.attributeValueStarts, attributeCount);
+        this.attributeValueLengths = Arrays.copyOf(builder.attributeValueLengths, attributeCount);
+        this.chars = Arrays.copyOf(builder.chars, builder.charCount);
+    }
+
+    VCompactDocument(byte[] kinds, int[] names, int[] parents, int[] firstChildren, int[] nextSiblings, int[] starts,
+                     int[] lengths, String[] nameTable, int[] attributeNames, int[] attributeValueStarts,
+                     int[] attributeValueLengths, char[] chars) {
+        this.kinds = kinds;
+        this.names = names;
+        this.parents = parents;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.nameTable = nameTable;
+        this.nameIds = new HashMap<>();
+        for (int i = 0; i < nameTable.length; i++) {
+            nameIds.put(nameTable[i], i);
+        }
+        this.attributeNames = attributeNames;
+        this.attributeValueStarts = attributeValueStarts;
+        this.attributeValueLengths = attributeValueLengths;
+        this.chars = chars;
+    }
+
+    /**
+     * Creates a {@link VCompactDocument} by parsing the content of the specified input stream.
+     * The stream is not closed.
+     */
+    public static VCompactDocument parse(InputStream inputStream) {
+        XMLStreamReader reader = null;
+        try {
+            reader = VXmlPool.inputFactory().createXMLStreamReader(inputStream);
+            return new Builder().build(reader);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Creates a {@link VCompactDocument} by parsing the content of the specified file.
+     */
+    public static VCompactDocument parse(Path xmlFile) {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(xmlFile))) {
+            return parse(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a {@link VCompactDocument} by parsing the specified string.
+     */
+    public static VCompactDocument parse(String xml) {
+        return parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the root element of this document.
+     */
+    public VCompactElement root() {
+        return new VCompactElement(this, 0);
+    }
+
+    /**
+     * Returns the number of elements and text nodes of this document.
+     */
+    public int nodeCount() {
+        return kinds.length;
+    }
+
+    /**
+     * Returns an unmodifiable list of the elements matching the specified path. Only paths made of child
+     * steps are supported, as <code>/project/dependencies/dependency[scope='test']</code>, with the predicates
+     * accepted by {@link VPath}. Paths not starting with '/' are evaluated from the root element.
+     *
+     * @throws IllegalArgumentException if the path is not made of child steps only.
+     */
+    public List<VCompactElement> xPath(String path) {
+        return xPath(VPath.compile(path));
+    }
+
+    /**
+     * Same as {@link #xPath(String)} but with a compiled path.
+     *
+     * @throws IllegalArgumentException if the path is not {@link VPath#isSimple() simple}.
+     */
+    public List<VCompactElement> xPath(VPath path) {
+        if (!path.isSimple()) {
+            throw new IllegalArgumentException("Only child steps are supported in " + path);
+        }
+        VPath.Step[] steps = path.steps();
+        List<Integer> current = Collections.singletonList(0);
+        int firstStep = 0;
+        if (path.isAbsolute()) {  // the root is the only child of the document
+            current = new ArrayList<>(1);
+            select(steps[0], Collections.singletonList(0), current);
+            firstStep = 1;
+        }
+        List<Integer> siblings = new ArrayList<>();
+        for (int i = firstStep; i < steps.length; i++) {
+            List<Integer> next = new ArrayList<>();
+            for (int node : current) {
+                siblings.clear();
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    if (kinds[child] == ELEMENT) {
+                        siblings.add(child);
+                    }
+                }
+                select(steps[i], siblings, next);
+            }
+            current = next;
+        }
+        List<VCompactElement> result = new ArrayList<>(current.size());
+        for (int node : current) {
+            result.add(new VCompactElement(this, node));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the id of the specified name, or {@link #NONE} if no element or attribute has this name.
+     */
+    int nameId(String name) {
+        Integer id = nameIds.get(name);
+        return id == null ? NONE : id;
+    }
+
+    // Adds to result the specified sibling elements matching the name and predicates of the specified step
+    private void select(VPath.Step step, List<Integer> siblings, List<Integer> result) {
+        int nameId = "*".equals(step.name) ? NONE : nameId(step.name);
+        if (nameId == NONE && !"*".equals(step.name)) {
+            return;
+        }
+        List<Integer> current = new ArrayList<>();
+        for (int sibling : siblings) {
+            if (nameId == NONE || names[sibling] == nameId) {
+                current.add(sibling);
+            }
+        }
+        for (int i = 0; i < step.kinds.length; i++) {
+            List<Integer> next = new ArrayList<>();
+            if (step.kinds[i] == VPath.POSITION) {
+                if (step.positions[i] <= current.size()) {
+                    next.add(current.get(step.positions[i] - 1));
+                }
+            } else {
+                for (int node : current) {
+                    boolean matching = step.kinds[i] == VPath.ATTRIBUTE
+                            ? hasAttribute(node, step.names[i], step.values[i])
+                            : hasChildText(node, step.names[i], step.values[i]);
+                    if (matching) {
+                        next.add(node);
+                    }
+                }
+            }
+            current = next;
+        }
+        result.addAll(current);
+    }
+
+    private boolean hasAttribute(int node, String name, String value) {
+        int nameId = nameId(name);
+        int end = starts[node] + lengths[node];
+        for (int i = starts[node]; i < end; i++) {
+            if (attributeNames[i] == nameId) {
+                return attributeValueLengths[i] == value.length()
+                        && value.equals(new String(chars, attributeValueStarts[i], attributeValueLengths[i]));
+            }
+        }
+        return false;
+    }
+
+    private boolean hasChildText(int node, String name, String value) {
+        int nameId = nameId(name);
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (kinds[child] == ELEMENT && names[child] == nameId
+                    && value.equals(new VCompactElement(this, child).text())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final class Builder {
+
+        private static final int MAX_SHARED_WHITESPACE = 128;
+
+        private int nodeCount;
+
+        private byte[] kinds = new byte[256];
+
+        private int[] names = new int[256];
+
+        private int[] parents = new int[256];
+
+        private int[] firstChildren = new int[256];
+
+        private int[] nextSiblings = new int[256];
+
+        private int[] starts = new int[256];
+
+        private int[] lengths = new int[256];
+
+        private int[] lastChildren = new int[256];
+
+        private final List<String> nameTable = new ArrayList<>();
+
+        private final Map<String, Integer> nameIds = new HashMap<>();
+
+        private int attributeCount;
+
+        private int[] attributeNames = new int[64];
+
+        private int[] attributeValueStarts = new int[64];
+
+        private int[] attributeValueLengths = new int[64];
+
+        private final Map<String, Integer> whitespaceStarts = new HashMap<>();
+
+        private int charCount;
+
+        private char[] chars = new char[4096];
+
+        VCompactDocument build(XMLStreamReader reader) throws XMLStreamException {
+            int current = NONE;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        current = startElement(reader, current);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        current = parents[current];
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.CDATA:
+                        if (current != NONE) {
+                            text(reader, current);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (nodeCount == 0) {
+                throw new IllegalArgumentException("Document has no root element");
+            }
+            return new VCompactDocument(this);
+        }
+
+        private int startElement(XMLStreamReader reader, int parent) {
+            int node = newNode(ELEMENT, parent);
+            names[node] = nameId(StaxSupport.name(reader));
+            starts[node] = attributeCount;
+            lengths[node] = reader.getAttributeCount();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (attributeCount == attributeNames.length) {
+                    int size = attributeCount * 2;
+                    attributeNames = Arrays.copyOf(attributeNames, size);
+                    attributeValueStarts = Arrays.copyOf(attributeValueStarts, size);
+                    attributeValueLengths = Arrays.copyOf(attributeValueLengths, size);
+                }
+                String value = reader.getAttributeValue(i);
+                attributeNames[attributeCount] = nameId(StaxSupport.attributeName(reader, i));
+                attributeValueStarts[attributeCount] = charCount;
+                attributeValueLengths[attributeCount] = value.length();
+                appendChars(value);
+                attributeCount++;
+            }
+            return node;
+        }
+
+        private void text(XMLStreamReader reader, int parent) {
+            int length = reader.getTextLength();
+            if (length == 0) {
+                return;
+            }
+            int start = whitespaceStart(reader, length);
+            if (start == NONE) {
+                start = charCount;
+                ensureChars(length);
+                System.arraycopy(reader.getTextCharacters(), reader.getTextStart(), chars, charCount, length);
+                charCount += length;
+            }
+            int node = newNode(TEXT, parent);
+            names[node] = NONE;
+            starts[node] = start;
+            lengths[node] = length;
+        }
+
+        // Indentation is stored once per distinct value as it makes up a large share of pretty-printed documents
+        private int whitespaceStart(XMLStreamReader reader, int length) {
+            if (length > MAX_SHARED_WHITESPACE || !reader.isWhiteSpace()) {
+                return NONE;
+            }
+            String whitespace = new String(reader.getTextCharacters(), reader.getTextStart(), length);
+            Integer start = whitespaceStarts.get(whitespace);
+            if (start != null) {
+                return start;
+            }
+            whitespaceStarts.put(whitespace, charCount);
+            return NONE;
+        }
+
+        private int newNode(byte kind, int parent) {
+            if (nodeCount == kinds.length) {
+                int size = nodeCount * 2;
+                kinds = Arrays.copyOf(kinds, size);
+                names = Arrays.copyOf(names, size);
+                parents = Arrays.copyOf(parents, size);
+                firstChildren = Arrays.copyOf(firstChildren, size);
+                nextSiblings = Arrays.copyOf(nextSiblings, size);
+                starts = Arrays.copyOf(starts, size);
+                lengths = Arrays.copyOf(lengths, size);
+                lastChildren = Arrays.copyOf(lastChildren, size);
+            }
+            int node = nodeCount++;
+            kinds[node] = kind;
+            parents[node] = parent;
+            firstChildren[node] = NONE;
+            nextSiblings[node] = NONE;
+            lastChildren[node] = NONE;
+            if (parent != NONE) {
+                int last = lastChildren[parent];
+                if (last == NONE) {
+                    firstChildren[parent] = node;
+                } else {
+                    nextSiblings[last] = node;
+                }
+                lastChildren[parent] = node;
+            }
+            return node;
+        }
+
+        private int nameId(String name) {
+            Integer id = nameIds.get(name);
+            if (id == null) {
+                id = nameTable.size();
+                nameTable.add(name);
+                nameIds.put(name, id);
+            }
+            return id;
+        }
+
+        private void appendChars(String value) {
+            ensureChars(value.length());
+            value.getChars(0, value.length(), chars, charCount);
+            charCount += value.length();
+        }
+
+        private void ensureChars(int length) {
+            if (charCount + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+            }
+        }
+
+    }
+
+}
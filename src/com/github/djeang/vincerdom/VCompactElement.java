@@ -0,0 +1,239 @@
+package com.github.djeang.vincerdom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static com.github.djeang.vincerdom.VCompactDocument.ELEMENT;
+import static com.github.djeang.vincerdom.VCompactDocument.NONE;
+import static com.github.djeang.vincerdom.VCompactDocument.TEXT;
+
+/**
+ * Element of a {@link VCompactDocument}. This is a lightweight view on the document arrays, created on navigation. <p>
+ * As for {@link VElement}, navigating to a non-existing element returns an element for which {@link #exist()}
+ * is <code>false</code>, so chained lookups do not need null checks.
+ *
+ * @author Jerome Angibaud
+ */
+public final class VCompactElement {
+
+    private final VCompactDocument doc;
+
+    private final int index;  // NONE if this element does not exist
+
+    VCompactElement(VCompactDocument doc, int index) {
+        this.doc = doc;
+        this.index = index;
+    }
+
+    /**
+     * Returns the tag name of this element, or <code>null</code> if this element does not exist.
+     */
+    public String tagName() {
+        if (!exist()) {
+            return null;
+        }
+        return doc.nameTable[doc.names[index]];
+    }
+
+    /**
+     * Returns the value of the specified attribute on this element. As for {@link VElement#attr(String)},
+     * returns an empty string if no such attribute exists, and <code>null</code> if this element does not exist.
+     */
+    public String attr(String name) {
+        if (!exist()) {
+            return null;
+        }
+        int nameId = doc.nameId(name);
+        int start = doc.starts[index];
+        int end = start + doc.lengths[index];
+        for (int i = start; i < end; i++) {
+            if (doc.attributeNames[i] == nameId) {
+                return new String(doc.chars, doc.attributeValueStarts[i], doc.attributeValueLengths[i]);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Returns the text content of this element, that is the concatenation of all its descendant texts.
+     * Returns <code>null</code> if this element does not exist.
+     */
+    public String text() {
+        if (!exist()) {
+            return null;
+        }
+        int first = doc.firstChildren[index];
+        if (first == NONE) {
+            return "";
+        }
+        if (doc.kinds[first] == TEXT && doc.nextSiblings[first] == NONE) {
+            return new String(doc.chars, doc.starts[first], doc.lengths[first]);
+        }
+        StringBuilder sb = new StringBuilder();
+        int node = first;
+        while (node != index) {
+            if (doc.kinds[node] == TEXT) {
+                sb.append(doc.chars, doc.starts[node], doc.lengths[node]);
+            } else if (doc.firstChildren[node] != NONE) {
+                node = doc.firstChildren[node];
+                continue;
+            }
+            while (node != index && doc.nextSiblings[node] == NONE) {
+                node = doc.parents[node];
+            }
+            if (node != index) {
+                node = doc.nextSiblings[node];
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the first descendant element matching the specified path made of child names separated
+     * by '/', as <code>build/plugins/plugin</code>. If no such element exists, this method returns
+     * a non-existing element.
+     */
+    public VCompactElement get(String path) {
+        int node = index;
+        int segmentStart = 0;
+        while (node != NONE && segmentStart <= path.length()) {
+            int slashIndex = path.indexOf('/', segmentStart);
+            int segmentEnd = slashIndex < 0 ? path.length() : slashIndex;
+            node = firstChild(node, doc.nameId(path.substring(segmentStart, segmentEnd)));
+            segmentStart = segmentEnd + 1;
+        }
+        return new VCompactElement(doc, node);
+    }
+
+    /**
+     * Returns the first child of this element having the specified name.
+     * Returns <code>null</code> if this element does not exist or no such named child exists.
+     */
+    public VCompactElement child(String name) {
+        int child = firstChild(index, doc.nameId(name));
+        return child == NONE ? null : new VCompactElement(doc, child);
+    }
+
+    /**
+     * Returns the first child of this element having the specified name and verifying the specified predicate.
+     * Returns <code>null</code> if this element does not exist or no such named child exists.
+     */
+    public VCompactElement child(String name, Predicate<VCompactElement> predicate) {
+        int nameId = doc.nameId(name);
+        for (int child = firstChild(index, nameId); child != NONE; child = nextSibling(child, nameId)) {
+            VCompactElement el = new VCompactElement(doc, child);
+            if (predicate.test(el)) {
+                return el;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an unmodifiable list of the child elements having the specified name and verifying the specified
+     * predicate. Returns an empty list if this element does not exist.
+     */
+    public List<VCompactElement> children(String name, Predicate<VCompactElement> predicate) {
+        int nameId = doc.nameId(name);
+        List<VCompactElement> result = new ArrayList<>();
+        for (int child = firstChild(index, nameId); child != NONE; child = nextSibling(child, nameId)) {
+            VCompactElement el = new VCompactElement(doc, child);
+            if (predicate.test(el)) {
+                result.add(el);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns an unmodifiable list of the child elements having the specified name.
+     * Returns an empty list if this element does not exist.
+     */
+    public List<VCompactElement> children(String name) {
+        return children(name, el -> true);
+    }
+
+    /**
+     * Returns an unmodifiable list of the child elements of this element.
+     * Returns an empty list if this element does not exist.
+     */
+    public List<VCompactElement> children() {
+        if (!exist()) {
+            return Collections.emptyList();
+        }
+        List<VCompactElement> result = new ArrayList<>();
+        for (int child = doc.firstChildren[index]; child != NONE; child = doc.nextSiblings[child]) {
+            if (doc.kinds[child] == ELEMENT) {
+                result.add(new VCompactElement(doc, child));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the parent element of this element, or <code>null</code> if this element is the root
+     * or does not exist.
+     */
+    public VCompactElement parent() {
+        if (!exist() || doc.parents[index] == NONE) {
+            return null;
+        }
+        return new VCompactElement(doc, doc.parents[index]);
+    }
+
+    /**
+     * Returns the document this element belongs to.
+     */
+    public VCompactDocument document() {
+        return doc;
+    }
+
+    /**
+     * Returns <code>true</code> if this element exists.
+     */
+    public boolean exist() {
+        return index != NONE;
+    }
+
+    private int firstChild(int parent, int nameId) {
+        if (parent == NONE || nameId == NONE) {
+            return NONE;
+        }
+        int child = doc.firstChildren[parent];
+        return child == NONE || doc.names[child] == nameId ? child : nextSibling(child, nameId);
+    }
+
+    private int nextSibling(int node, int nameId) {
+        int sibling = doc.nextSiblings[node];
+        while (sibling != NONE && doc.names[sibling] != nameId) {
+            sibling = doc.nextSiblings[sibling];
+        }
+        return sibling;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof VCompactElement)) {
+            return false;
+        }
+        VCompactElement element = (VCompactElement) other;
+        return doc == element.doc && index == element.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(doc) + index;
+    }
+
+    @Override
+    public String toString() {
+        if (!exist()) {
+            return "<non-existing>";
+        }
+        VCompactElement parent = parent();
+        return parent == null ? tagName() : parent + "/" + tagName();
+    }
+
+}
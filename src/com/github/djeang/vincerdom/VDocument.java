@@ -1,13 +1,14 @@
 package com.github.djeang.vincerdom;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -15,13 +16,26 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 /**
@@ -31,13 +45,23 @@ import java.util.function.Consumer;
  */
 public final class VDocument {
 
+    private static final String FROZEN_KEY = "vincerdom.frozen";
+
     private final Document w3cDocument;
 
     private final Path fileHolder;
 
+    // Wrappers of root and xPath results, held weakly so that navigated wrapper trees live only while used
+    private final Map<Element, WrapperReference> wrappers = new IdentityHashMap<>(4);
+
+    private final ReferenceQueue<VElement<?>> collectedWrappers = new ReferenceQueue<>();
+
+    private volatile boolean frozen;
+
     private VDocument(Document w3cDocument, Path fileHolder) {
         this.w3cDocument = w3cDocument;
         this.fileHolder = fileHolder;
+        this.frozen = isFrozen(w3cDocument);
     }
 
     /**
@@ -47,19 +71,16 @@ public final class VDocument {
         return new VDocument(w3cDocument, null);
     }
 
+    static VDocument of(Document w3cDocument, Path file) {
+        return new VDocument(w3cDocument, file);
+    }
+
     /**
      * Creates a document with a root element of the specified name.
      */
     public static VDocument of(String rootName) {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        final DocumentBuilder builder;
-        try {
-            builder = dbf.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
-        }
-        Document doc = builder.newDocument();
-        Element element = doc.createElement(rootName);
+        Document doc = VXmlPool.documentBuilder().newDocument();
+        Element element = doc.createElement(SymbolTable.of(rootName));
         doc.appendChild(element);
         return new VDocument(doc, null);
     }
@@ -71,7 +92,7 @@ public final class VDocument {
     public static VDocument parse(InputStream inputStream, DocumentBuilder documentBuilder) {
         Document doc;
         try {
-            doc = documentBuilder.parse(inputStream);
+            doc = parseDocument(inputStream, documentBuilder::parse, -1);
         } catch (SAXException e) {
             throw new RuntimeException(e);
         } catch (IOException e) {
@@ -89,39 +110,119 @@ public final class VDocument {
     }
 
     /**
-     * Same as {@link #parse(InputStream, DocumentBuilder)} but using a default {@link DocumentBuilder}.
+     * Same as {@link #parse(InputStream, DocumentBuilder)} but using the {@link DocumentBuilder} pooled
+     * in {@link VXmlPool}.
      */
     public static VDocument parse(InputStream inputStream) {
-        final DocumentBuilder builder;
+        return parse(inputStream, VXmlPool.documentBuilder());
+    }
+
+    /**
+     * Same as {@link #parse(InputStream)} but parsing with the specified engine.
+     */
+    public static VDocument parse(InputStream inputStream, VParseEngine engine) {
+        if (engine == VParseEngine.DOM_BUILDER) {
+            return parse(inputStream);
+        }
+        Document doc;
         try {
-            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
+            doc = parseDocument(inputStream, StaxDomBuilder::parse, -1);
+        } catch (SAXException e) {
             throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return parse(inputStream, builder);
+        return new VDocument(doc, null);
     }
 
     /**
      * Creates a {@link VDocument} by parsing the content of the specified path.
      */
     public static VDocument parse(Path xmlFile) {
-        final DocumentBuilder builder;
+        return parse(xmlFile, VParseEngine.DOM_BUILDER);
+    }
+
+    /**
+     * Same as {@link #parse(Path)} but parsing with the specified engine.
+     */
+    public static VDocument parse(Path xmlFile, VParseEngine engine) {
+        DocumentParser parser = engine == VParseEngine.STAX ? StaxDomBuilder::parse : VXmlPool.documentBuilder()::parse;
         Document doc;
         try (InputStream inputStream = Files.newInputStream(xmlFile)) {
-            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            doc = builder.parse(inputStream);
+            doc = parseDocument(inputStream, parser, -1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SAXException e) {
+            throw new RuntimeException(e);
+        }
+        return new VDocument(doc, xmlFile);
+    }
+
+    /**
+     * Same as {@link #parse(Path)} but running on another thread, so the caller is never blocked on file I/O.
+     * Parsing runs on a shared, bounded pool of daemon threads, which keep their pooled parsers across calls.
+     */
+    public static CompletableFuture<VDocument> parseAsync(Path xmlFile) {
+        return parseAsync(xmlFile, AsyncSupport.defaultExecutor());
+    }
+
+    /**
+     * Same as {@link #parseAsync(Path)} but running on the specified executor.
+     */
+    public static CompletableFuture<VDocument> parseAsync(Path xmlFile, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> parse(xmlFile), executor);
+    }
+
+    /**
+     * Same as {@link #parse(Path)} but memory-mapping the file and feeding the parser straight from the mapped
+     * buffer, sparing a copy through the file stream buffers. This suits large files that are read once. <p>
+     * The mapping is released when garbage collected : until then, some platforms prevent the file from
+     * being deleted or overwritten. Files of 2GB or more, which cannot be mapped in a single buffer, are read as
+     * {@link #parse(Path)} does.
+     */
+    public static VDocument parseMapped(Path xmlFile) {
+        Document doc;
+        try (FileChannel channel = FileChannel.open(xmlFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return parse(xmlFile);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            doc = parseDocument(new ByteBufferInputStream(buffer), VXmlPool.documentBuilder()::parse, buffer.limit());
         } catch (IOException e) {
             throw new UncheckedIOException(e);
-        } catch (ParserConfigurationException | SAXException e) {
+        } catch (SAXException e) {
             throw new RuntimeException(e);
         }
         return new VDocument(doc, xmlFile);
     }
 
+    /**
+     * Creates a {@link VDocument} from the specified file, building elements only when navigated to. <p>
+     * The file is memory-mapped and scanned for element boundaries, then only the root element is built.
+     * The content of an element is built the first time its children are looked up, through <code>get</code>,
+     * <code>child</code>, <code>children</code> or a path handled by {@link VPath}. So startup time and heap
+     * usage grow with the part of the document actually visited rather than with the file size, beyond an index
+     * of about 20 bytes per element. This pays off on large files : small ones are faster read by
+     * {@link #parse(Path)}. Reading the text of an element, evaluating an XPath expression, printing or accessing
+     * W3C nodes build the whole subtree concerned. <p>
+     * Changes are {@link #trackChanges() tracked}, so saving copies unvisited regions from the source file.
+     * The file must not be modified by other means while the document is in use. Files having a document type
+     * declaration or not encoded in an ASCII compatible encoding are parsed upfront as {@link #parse(Path)} does.
+     */
+    public static VDocument parseLazy(Path xmlFile) {
+        Document doc = XmlLazySource.parse(xmlFile);
+        if (doc == null) {
+            return parse(xmlFile).trackChanges();
+        }
+        EditTracker.enable(doc, xmlFile);
+        return new VDocument(doc, xmlFile);
+    }
+
     /**
      * Returns thd underlying w3c {@link Document}.
      */
     public Document getW3cDocument() {
+        LazySource.loadAll(w3cDocument);
         return w3cDocument;
     }
 
@@ -130,7 +231,88 @@ public final class VDocument {
      */
     public VElement<VDocument> root() {
         Element root = w3cDocument.getDocumentElement();
-        return VElement.of(this, root);
+        return wrap(root);
+    }
+
+    /**
+     * Returns a deep copy of this document, not bound to any file. This is faster than parsing again
+     * or cloning through the W3C API. To create many documents from the same source,
+     * {@link VTemplate} is faster still. The document type declaration is kept without its internal subset,
+     * which the W3C API cannot recreate.
+     */
+    public VDocument copy() {
+        Document doc = VXmlPool.documentBuilder().newDocument();
+        for (Node child = w3cDocument.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+                DocumentType documentType = (DocumentType) child;
+                doc.appendChild(doc.getImplementation().createDocumentType(documentType.getName(),
+                        documentType.getPublicId(), documentType.getSystemId()));
+            } else {
+                doc.appendChild(DomUtils.importNode(doc, child));
+            }
+        }
+        return new VDocument(doc, null);
+    }
+
+    /**
+     * Indexes the child elements of every element of this document by name, as
+     * {@link VElement#indexChildren()} does for a single element. Each element gets its index the first time
+     * its children are looked up by name. Invoking this method again discards all indexes built so far.
+     */
+    public VDocument indexChildren() {
+        assertNotFrozen();
+        ChildIndex.enable(w3cDocument);
+        return this;
+    }
+
+    /**
+     * Makes this document read-only so it can be shared across threads. Once frozen, reading methods of this
+     * document and of its elements, as <code>root()</code>, <code>get</code>, <code>child</code>,
+     * <code>children</code>, <code>text</code>, <code>attr</code> and <code>xPath</code>, are safe to call
+     * concurrently without locking, while modifying methods throw {@link IllegalStateException}. <p>
+     * Freezing walks the whole document once, so nodes the parser left unexpanded and child indexes are built
+     * upfront instead of on first read. Navigation then returns new wrappers at each call rather than caching
+     * them. Wrappers obtained before freezing must not be shared. Compiled
+     * {@link javax.xml.xpath.XPathExpression}s must not be shared either : use {@link #xPath(String)} or
+     * compile one per thread. Modifications made through the W3C API are not prevented.
+     */
+    public VDocument freeze() {
+        if (frozen) {
+            return this;
+        }
+        expand(w3cDocument);
+        w3cDocument.setUserData(FROZEN_KEY, Boolean.TRUE, null);
+        wrappers.clear();
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Records modifications made through {@link VElement} methods from now on, so that saving writes back
+     * only the modified elements : the rest of the source file is copied byte for byte, keeping its formatting
+     * and comments. This pays off for large files getting small edits. <p>
+     * Saving to the source file then goes through a temporary file, as for {@link #saveAtomically()}, and the
+     * saved content becomes the new reference. If the source file has been modified by other means meanwhile,
+     * or is not UTF-8 encoded, the whole document is printed as usual. Modifications made through the W3C API
+     * are not recorded, so they may be lost. Invoke this method right after parsing, before any modification.
+     *
+     * @throws IllegalStateException if the document has not been created from an existing file.
+     */
+    public VDocument trackChanges() {
+        assertNotFrozen();
+        EditTracker.enable(w3cDocument, fileHolder());
+        return this;
+    }
+
+    /**
+     * Returns <code>true</code> if this document has been {@link #freeze() frozen}.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    static boolean isFrozen(Document document) {
+        return document.getUserData(FROZEN_KEY) != null;
     }
 
     /**
@@ -138,9 +320,15 @@ public final class VDocument {
      * This method generates the XML content as UTF-8 encoded text.
      */
     public String printAsString() {
-        return printAsString(transformerConfigurer -> {});
+        StringBuilder sb = new StringBuilder();
+        printTo(sb);
+        return sb.toString();
     }
 
+    /**
+     * Same as {@link #printAsString()} but going through the XML transformer, which caller can modify
+     * using the specified {@link Consumer<Transformer>}.
+     */
     public String printAsString(Consumer<Transformer> transformerConfigurer) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         print(baos, transformerConfigurer);
@@ -148,33 +336,70 @@ public final class VDocument {
     }
 
     /**
-     * Outputs xml in the specified stream.
+     * Outputs xml in the specified stream, encoded in UTF-8 and indented with 4 spaces. <p>
+     * The document is written directly, without going through an XML transformer. Output is the same as
+     * the one of the identity transformer of JDK 9 and later, except that the declared encoding is always UTF-8,
+     * and it does not depend on the running JDK. On Java 8, it thus differs from the output of the Java 8
+     * transformer, which puts no line break after the XML declaration and keeps whitespace-only text between
+     * elements on top of its own indentation. Use {@link #print(OutputStream, Consumer)} to get the output of the
+     * running JDK transformer. The stream is not closed.
      */
     public void print(OutputStream out) {
-        print(out, configurer -> {});
+        print(Channels.newChannel(out));
     }
 
     /**
-     * Same as {@link #print(OutputStream)} but caller can modify the default XML transformer using the
-     * specified {@link Consumer<Transformer>}.
+     * Same as {@link #print(OutputStream)} but writing to the specified channel. Chars are encoded into pooled
+     * byte buffers, written to the channel as they fill up. The channel is not closed.
      */
-    public void print(OutputStream out, Consumer<Transformer> transformerConfigurer) {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        final Transformer transformer;
+    public void print(WritableByteChannel channel) {
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
+        LazySource.loadAll(w3cDocument);
+        ChannelWriter writer = ChannelWriter.of(channel);
         try {
-            transformer = tf.newTransformer();
-        } catch (TransformerConfigurationException e) {
-            throw new RuntimeException(e);
+            new DomPrinter(writer).print(w3cDocument);
+            writer.flush();
+            if (start != 0) {
+                Metrics.printed(start, writer.byteCount());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the xml text of this document to the specified {@link Appendable}, as {@link #print(OutputStream)}
+     * would write it.
+     */
+    public void printTo(Appendable appendable) {
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
+        LazySource.loadAll(w3cDocument);
+        new DomPrinter(appendable).print(w3cDocument);
+        if (start != 0) {
+            Metrics.printed(start, -1);
         }
+    }
+
+    /**
+     * Same as {@link #print(OutputStream)} but going through an identity XML transformer, which caller can
+     * modify using the specified {@link Consumer<Transformer>}.
+     */
+    public void print(OutputStream out, Consumer<Transformer> transformerConfigurer) {
+        Transformer transformer = VXmlPool.transformer();
         transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
         transformer.setOutputProperty(OutputKeys.METHOD, "xml");
         transformer.setOutputProperty(OutputKeys.INDENT, "yes");
         transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
         transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
         transformerConfigurer.accept(transformer);
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
+        LazySource.loadAll(w3cDocument);
         try {
             transformer.transform(new DOMSource(w3cDocument),
                     new StreamResult(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+            if (start != 0) {
+                Metrics.printed(start, -1);
+            }
         } catch (TransformerException e) {
             throw new RuntimeException(e);
         }
@@ -185,17 +410,32 @@ public final class VDocument {
      *
      * @param outputFile the path to the file where the document will be saved.
      * @param openOptions options specifying how the file is opened or created. These are the same options
-     *                    supported by {@link Files#newOutputStream}.
+     *                    supported by {@link Files#newOutputStream}. When {@link #trackChanges() tracking changes},
+     *                    unmodified regions are copied from the source file unless appending.
      * @throws UncheckedIOException if an I/O error occurs while writing to the file.
      */
     public void save(Path outputFile, OpenOption... openOptions) {
-        OutputStream out = null;
-        try {
-            out = Files.newOutputStream(outputFile, openOptions);
+        EditTracker tracker = EditTracker.of(w3cDocument);
+        Set<OpenOption> options = FileSupport.writeOptions(openOptions);
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        if (tracker != null && !append && !options.contains(StandardOpenOption.CREATE_NEW)
+                && tracker.isSource(outputFile)) {
+            saveAtomically(outputFile);  // the source must not be overwritten while being copied
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(outputFile, options)) {
+            long start = Metrics.enabled() ? System.nanoTime() : 0;
+            if (tracker == null || append) {
+                print(channel);
+            } else if (!tracker.write(w3cDocument, channel)) {
+                channel.truncate(0).position(0);
+                print(channel);
+            } else if (start != 0) {
+                Metrics.printed(start, channel.position());
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        print(out);
     }
 
     /**
@@ -206,31 +446,196 @@ public final class VDocument {
      * @throws IllegalStateException if the document has not been created from an existing file.
      */
     public void save(OpenOption... openOptions) {
+        save(fileHolder(), openOptions);
+    }
+
+    /**
+     * Saves the current document to the specified output file, writing first a temporary file in the same
+     * directory then renaming it. Concurrent readers see either the former content or the new one, never a
+     * partially written file.
+     *
+     * @throws UncheckedIOException if an I/O error occurs while writing to the file.
+     */
+    public void saveAtomically(Path outputFile) {
+        EditTracker tracker = EditTracker.of(w3cDocument);
+        boolean toSource = tracker != null && tracker.isSource(outputFile);
+        FileSupport.writeAtomically(outputFile, temp -> save(temp));
+        if (toSource) {
+            tracker.reset();
+        }
+    }
+
+    /**
+     * Same as {@link #save(Path, OpenOption...)} but running on another thread, as {@link #parseAsync(Path)} does.
+     * This document must not be modified until the returned future completes.
+     */
+    public CompletableFuture<Void> saveAsync(Path outputFile, OpenOption... openOptions) {
+        return saveAsync(outputFile, AsyncSupport.defaultExecutor(), openOptions);
+    }
+
+    /**
+     * Same as {@link #saveAsync(Path, OpenOption...)} but running on the specified executor.
+     */
+    public CompletableFuture<Void> saveAsync(Path outputFile, Executor executor, OpenOption... openOptions) {
+        return CompletableFuture.runAsync(() -> save(outputFile, openOptions), executor);
+    }
+
+    /**
+     * Same as {@link #saveAtomically(Path)} but saving to the file this document was initially loaded from.
+     *
+     * @throws IllegalStateException if the document has not been created from an existing file.
+     */
+    public void saveAtomically() {
+        saveAtomically(fileHolder());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> VElement<T> wrap(Element element) {
+        if (frozen) {
+            return (VElement<T>) new VElement<>(this, element);
+        }
+        purgeCollectedWrappers();
+        WrapperReference reference = wrappers.get(element);
+        VElement<?> wrapper = reference == null ? null : reference.get();
+        if (wrapper == null) {
+            wrapper = new VElement<>(this, element);
+            wrappers.put(element, new WrapperReference(wrapper, element, collectedWrappers));
+        }
+        return (VElement<T>) wrapper;
+    }
+
+    /*
+     * Drops the cached wrapper of the specified element, once removed or moved.
+     */
+    void evictWrapper(Element element) {
+        wrappers.remove(element);
+    }
+
+    int cachedWrapperCount() {
+        purgeCollectedWrappers();
+        return wrappers.size();
+    }
+
+    private void purgeCollectedWrappers() {
+        for (Reference<?> reference = collectedWrappers.poll(); reference != null;
+             reference = collectedWrappers.poll()) {
+            Element element = ((WrapperReference) reference).element;
+            if (wrappers.get(element) == reference) {
+                wrappers.remove(element);
+            }
+        }
+    }
+
+    private void assertNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("This document is frozen and cannot be modified.");
+        }
+    }
+
+    /*
+     * Reads every node so none is left to be expanded or indexed lazily, as this would write on read.
+     */
+    private static void expand(Document document) {
+        LazySource.loadAll(document);
+        Node node = document.getFirstChild();
+        while (node != null) {
+            node.getNodeName();
+            node.getNodeValue();
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    attributes.item(i).getNodeValue();
+                }
+                ChildIndex.prepare((Element) node);
+            }
+            Node next = node.getFirstChild();
+            while (next == null && node != null) {
+                next = node.getNextSibling();
+                node = node.getParentNode();
+            }
+            node = next;
+        }
+    }
+
+    /*
+     * Parses the specified stream, measuring it if metrics are enabled. Bytes are counted while read
+     * unless the specified size is known (not negative).
+     */
+    private static Document parseDocument(InputStream inputStream, DocumentParser parser, long size)
+            throws IOException, SAXException {
+        if (!Metrics.enabled()) {
+            return parser.parse(inputStream);
+        }
+        long start = System.nanoTime();
+        Metrics.CountingInputStream countingStream = size < 0 ? new Metrics.CountingInputStream(inputStream) : null;
+        Document doc = parser.parse(countingStream == null ? inputStream : countingStream);
+        Metrics.parsed(start, countingStream == null ? size : countingStream.count(), doc);
+        return doc;
+    }
+
+    private Path fileHolder() {
         if (fileHolder == null) {
             throw new IllegalStateException("This document has not been created from an existing file. " +
                     "Use `#save(Path)` method instead.");
         }
-        save(fileHolder, openOptions);
+        return fileHolder;
     }
 
     /**
      * Returns an unmodifiable list of elements matching the specified xPath expression.
      */
     public List<VElement<Void>> xPath(XPathExpression xPathExpression) {
-        List<VElement<Void>> result = new LinkedList<>();
         final NodeList nodeList;
+        LazySource.loadAll(w3cDocument);
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
         try {
             nodeList = (NodeList) xPathExpression.evaluate(this.w3cDocument, XPathConstants.NODESET);
         } catch (XPathExpressionException e) {
             throw new IllegalStateException("Error when evaluating xPath expression " + xPathExpression, e);
         }
+        if (start != 0) {
+            Metrics.current().xPathEvaluated(System.nanoTime() - start, nodeList.getLength());
+        }
+        List<VElement<Void>> result = new ArrayList<>(nodeList.getLength());
         for (int i = 0; i < nodeList.getLength(); i++) {
-            VElement<Void> el = new VElement(this, (Element) nodeList.item(i));
+            VElement<Void> el = wrap((Element) nodeList.item(i));
             result.add(el);
         }
         return Collections.unmodifiableList(result);
     }
 
+    /**
+     * Returns an unmodifiable list of elements selected by the specified path. Simple paths are evaluated by
+     * walking child elements, without going through the XPath engine.
+     */
+    public List<VElement<Void>> xPath(VPath path) {
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
+        List<Element> elements = path.select(w3cDocument);
+        if (start != 0) {
+            Metrics.current().xPathEvaluated(System.nanoTime() - start, elements.size());
+        }
+        List<VElement<Void>> result = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            result.add(wrap(element));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Same as {@link #xPath(XPathExpression)} but binding the specified values to the variables referenced
+     * in the expression (e.g. <code>$artifactId</code>). The expression must have been compiled by
+     * {@link VXPath#compile(String, Object...)}, which binds expressions to the variables passed here.
+     *
+     * @throws IllegalArgumentException if the expression has not been compiled by {@link VXPath}.
+     */
+    public List<VElement<Void>> xPath(XPathExpression xPathExpression, Map<String, ?> variables) {
+        if (!VXPath.isCompiled(xPathExpression)) {
+            throw new IllegalArgumentException("Variables can only be bound to expressions compiled by "
+                    + "VXPath.compile, not " + xPathExpression);
+        }
+        return VXPath.withVariables(variables, () -> xPath(xPathExpression));
+    }
+
     /**
      * Returns an unmodifiable list of elements matching the specified xPath expression.
      */
@@ -239,4 +644,29 @@ public final class VDocument {
         return xPath(compiledExpression);
     }
 
+    /**
+     * Same as {@link #xPath(XPathExpression, Map)} but compiling the expression through {@link VXPath}.
+     * As values are not part of the expression text, the compiled expression is reused whatever the values are.
+     */
+    public List<VElement<Void>> xPath(String xPathExpression, Map<String, ?> variables) {
+        return xPath(VXPath.compile(xPathExpression), variables);
+    }
+
+    private interface DocumentParser {
+
+        Document parse(InputStream inputStream) throws IOException, SAXException;
+
+    }
+
+    private static final class WrapperReference extends WeakReference<VElement<?>> {
+
+        private final Element element;
+
+        WrapperReference(VElement<?> wrapper, Element element, ReferenceQueue<VElement<?>> queue) {
+            super(wrapper, queue);
+            this.element = element;
+        }
+
+    }
+
 }
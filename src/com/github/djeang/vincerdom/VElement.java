@@ -1,5 +1,6 @@
 package com.github.djeang.vincerdom;
 
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -7,37 +8,55 @@ import org.w3c.dom.NodeList;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Wrapper for {@link org.w3c.dom.Element} offering a Parent-Chaining fluent interface. <p>
  * The underlying element may exist or not. If the underlying element does not exist,
  * a proxy element is used in place but write methods are disabled. The concrete w3c element
- * can be created afterward using the {@link #make()} method.
+ * can be created afterward using the {@link #make()} method. <p>
+ * Navigation methods return the same wrapper each time they reach a given element from a given wrapper,
+ * so walking the same tree repeatedly does not produce new wrappers. Elements of a {@link VDocument#freeze() frozen}
+ * document are an exception as wrappers are then shared across threads : each call returns a new wrapper.
+ * Cached wrappers are dropped when their element is removed or moved, so they do not keep detached elements alive.
  *
  * @author Jerome Angibaud
  */
 public final class VElement<P> {
 
+    private static final int MIN_SWEEP_SIZE = 16;
+
     public final P __;
 
     private Element w3cElement;
 
     private ElementProxy proxyElement;  // only used for non-existing element, so we can create it afterward.
 
+    private Map<Element, VElement<?>> childWrappers;  // wrappers handed out with this element as parent
+
+    private int sweepSize;  // size of childWrappers beyond which wrappers of detached elements are dropped
+
+    private final boolean frozen;  // true if obtained from a frozen document, so caching is off
+
     VElement(P parent, Element element) {
         this.__ = parent;
         this.w3cElement = element;
+        this.frozen = parent instanceof VElement ? ((VElement<?>) parent).frozen
+                : parent instanceof VDocument && ((VDocument) parent).isFrozen();
     }
 
     private VElement(P __, VElement parent, String name) {
         this.__ = __;
         this.proxyElement = ElementProxy.of(parent, name);
+        this.frozen = parent.frozen || parent.exist() && VDocument.isFrozen(parent.w3cElement.getOwnerDocument());
     }
 
     /**
@@ -58,6 +77,7 @@ public final class VElement<P> {
      * Returns the underlying w3cElement. This element can be null if this VElement does not exist.
      */
     public Element getW3cElement() {
+        LazySource.loadAll(w3cElement);
         return w3cElement;
     }
 
@@ -66,8 +86,22 @@ public final class VElement<P> {
      * @throws IllegalStateException if the underlying element does not exist.
      */
     public VElement<P> attr(String name, String value) {
-        assertExist();
-        w3cElement.setAttribute(name, value);
+        assertWritable();
+        EditTracker.attributesChanging(w3cElement);
+        w3cElement.setAttribute(SymbolTable.of(name), value);
+        return this;
+    }
+
+    /**
+     * Adds the specified attribute name/values on the underlying element, in the map iteration order.
+     * @throws IllegalStateException if the underlying element does not exist.
+     */
+    public VElement<P> attrs(Map<String, String> attributes) {
+        assertWritable();
+        EditTracker.attributesChanging(w3cElement);
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            w3cElement.setAttribute(SymbolTable.of(entry.getKey()), entry.getValue());
+        }
         return this;
     }
 
@@ -84,7 +118,8 @@ public final class VElement<P> {
      * @throws IllegalStateException if the underlying element does not exist.
      */
     public VElement<P> removeAttr(String name) {
-        assertExist();
+        assertWritable();
+        EditTracker.attributesChanging(w3cElement);
         w3cElement.removeAttribute(name);
         return this;
     }
@@ -94,8 +129,11 @@ public final class VElement<P> {
      * @throws IllegalStateException if the underlying element does not exist.
      */
     public VElement<P> text(String text) {
-        assertExist();
+        assertWritable();
+        contentChanging();
         w3cElement.setTextContent(text);
+        ChildIndex.invalidate(w3cElement);
+        childWrappers = null;
         return this;
     }
 
@@ -118,6 +156,7 @@ public final class VElement<P> {
         if (!exist()) {
             return null;
         }
+        LazySource.loadAll(w3cElement);
         return w3cElement.getTextContent();
     }
 
@@ -127,49 +166,97 @@ public final class VElement<P> {
      * @throws IllegalStateException if the underlying element does not exist.
      */
     public VElement<VElement<P>> add(String name) {
-        assertExist();
-        Element newElement = w3cElement.getOwnerDocument().createElement(name);
+        assertWritable();
+        contentChanging();
+        Element newElement = w3cElement.getOwnerDocument().createElement(SymbolTable.of(name));
         w3cElement.appendChild(newElement);
-        return new VElement<>(this, newElement);
+        ChildIndex.appended(w3cElement, newElement);
+        return wrap(newElement);
     }
 
     /**
      * Adds the specified {@code VElement} as a child to the current element.
-     * If the source element comes from a different document, it is cloned and adopted into the current document
+     * If the source element comes from a different document, it is deep copied into the current document
      * before being added as a child.
      *
      * @param source the {@code VElement} to be added as a child to the current element
      * @return the newly added {@code VElement} wrapped in its updated parent context
      */
     public VElement<VElement<P>> add(VElement<?> source) {
+        assertWritable();
         source.assertExist();
         VElement<?> attachedSource = source;
         if (source.w3cElement.getOwnerDocument() != this.w3cElement.getOwnerDocument()) {
-            Element cloned = (Element) source.w3cElement.cloneNode(true);
-            w3cElement.getOwnerDocument().adoptNode(cloned);
-            attachedSource = new VElement<>(this, cloned);
+            Element cloned = (Element) DomUtils.importNode(w3cElement.getOwnerDocument(), source.w3cElement);
+            attachedSource = wrap(cloned);
+        } else if (source.w3cElement.getParentNode() != null) {
+            EditTracker.contentChanging(source.w3cElement.getParentNode());
+            ChildIndex.removed(source.w3cElement.getParentNode(), source.w3cElement);
+            source.evictWrapper();
         }
-        w3cElement.appendChild(attachedSource.getW3cElement());
+        contentChanging();
+        w3cElement.appendChild(attachedSource.w3cElement);
+        ChildIndex.appended(w3cElement, attachedSource.w3cElement);
         return (VElement<VElement<P>>) attachedSource;
     }
 
+    /**
+     * Adds a new child element built from the specified template. This method returns the newly
+     * created element.
+     * @throws IllegalStateException if the underlying element does not exist.
+     */
+    public VElement<VElement<P>> add(VTemplate template) {
+        assertWritable();
+        contentChanging();
+        Element newElement = template.build(w3cElement.getOwnerDocument(), w3cElement);
+        ChildIndex.appended(w3cElement, newElement);
+        return wrap(newElement);
+    }
+
+    /**
+     * Adds the specified elements as children of the underlying element, in a single DOM insertion. Elements
+     * coming from a different document are cloned as for {@link #add(VElement)}. This method returns this element.
+     * @throws IllegalStateException if the underlying element does not exist.
+     */
+    public VElement<P> addAll(List<? extends VElement<?>> sources) {
+        assertWritable();
+        contentChanging();
+        DocumentFragment fragment = w3cElement.getOwnerDocument().createDocumentFragment();
+        for (VElement<?> source : sources) {
+            source.assertExist();
+            Element element = source.w3cElement;
+            if (element.getOwnerDocument() != w3cElement.getOwnerDocument()) {
+                element = (Element) DomUtils.importNode(w3cElement.getOwnerDocument(), element);
+            } else if (element.getParentNode() != null) {
+                EditTracker.contentChanging(element.getParentNode());
+                ChildIndex.removed(element.getParentNode(), element);
+            }
+            fragment.appendChild(element);
+        }
+        w3cElement.appendChild(fragment);
+        ChildIndex.invalidate(w3cElement);
+        return this;
+    }
+
     /**
      * Returns the first child element of the underlying element having the specified name. <p>
      * If no such element exist, this method returns a proxy element that let creation possible afterward.
+     * Invoked on a proxy, this method creates the proxied element, unless the document is frozen.
      */
     public VElement<VElement<P>> get(String name) {
-        if (name.contains("/")) {
-            String firstSegment = name.substring(0, name.indexOf('/'));
-            String lastSegment = name.substring(name.indexOf('/') + 1);
+        int slashIndex = name.indexOf('/');
+        if (slashIndex >= 0) {
+            String firstSegment = name.substring(0, slashIndex);
+            String lastSegment = name.substring(slashIndex + 1);
             VElement firstEl = get(firstSegment);
             return firstEl.get(lastSegment);
         }
         if (!exist()) {  // If this element does not exist, it creates the proxy on the child element
-            return ElementProxy.of(this, name).create();
+            return frozen ? new VElement<>(this, this, name) : ElementProxy.of(this, name).create();
         }
-        VElement child = this.child(name);
+        Element child = ChildIndex.firstChild(w3cElement, name);
         if (child != null) {
-            return child;
+            return wrap(child);
         }
         return new VElement<>(this, this, name);
     }
@@ -179,10 +266,31 @@ public final class VElement<P> {
      * Returns an empty list if the underlying element does not exist.
      */
     public List<VElement<Void>> children(String name, Predicate<VElement<Void>> predicate) {
-        return children().stream()
-                .filter(element -> name.equals(element.tagName()))
-                .filter(predicate)
-                .collect(Collectors.toList());
+        if (!exist()) {
+            return Collections.emptyList();
+        }
+        List<VElement<Void>> result = new ArrayList<>();
+        List<Element> indexed = ChildIndex.children(w3cElement, name);
+        if (indexed != null) {
+            for (Element child : indexed) {
+                VElement<Void> el = wrap(child);
+                if (predicate.test(el)) {
+                    result.add(el);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        }
+        String symbol = SymbolTable.of(name);
+        for (Element child = DomUtils.firstChildElement(w3cElement); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            if (SymbolTable.hasName(child, symbol)) {
+                VElement<Void> el = wrap(child);
+                if (predicate.test(el)) {
+                    result.add(el);
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
     /**
@@ -190,7 +298,22 @@ public final class VElement<P> {
      * Returns an empty list if the underlying element does not exist.
      */
     public List<VElement<Void>> children(String name) {
-        return children(name, el -> true);
+        if (!exist()) {
+            return Collections.emptyList();
+        }
+        List<Element> indexed = ChildIndex.children(w3cElement, name);
+        if (indexed != null) {
+            return new ChildList(new ArrayList<>(indexed));
+        }
+        List<Element> elements = new ArrayList<>();
+        String symbol = SymbolTable.of(name);
+        for (Element child = DomUtils.firstChildElement(w3cElement); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            if (SymbolTable.hasName(child, symbol)) {
+                elements.add(child);
+            }
+        }
+        return new ChildList(elements);
     }
 
     /**
@@ -201,16 +324,12 @@ public final class VElement<P> {
         if (!exist()) {
             return Collections.emptyList();
         }
-        List<VElement<Void>> result = new LinkedList<>();
-        NodeList nodeList = w3cElement.getChildNodes();
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
-            if (node instanceof Element) {
-                VElement<Void> el = new VElement(this, (Element) nodeList.item(i));
-                result.add(el);
-            }
+        List<Element> elements = new ArrayList<>();
+        for (Element child = DomUtils.firstChildElement(w3cElement); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            elements.add(child);
         }
-        return Collections.unmodifiableList(result);
+        return new ChildList(elements);
     }
 
     /**
@@ -218,7 +337,30 @@ public final class VElement<P> {
      * Returns <code>null</null> if the underlying element does not exist or no such named child exists.
      */
     public VElement<Void> child(String name, Predicate<VElement<Void>> predicate) {
-        return children(name, predicate).stream().findFirst().orElse(null);
+        if (!exist()) {
+            return null;
+        }
+        List<Element> indexed = ChildIndex.children(w3cElement, name);
+        if (indexed != null) {
+            for (Element child : indexed) {
+                VElement<Void> el = wrap(child);
+                if (predicate.test(el)) {
+                    return el;
+                }
+            }
+            return null;
+        }
+        String symbol = SymbolTable.of(name);
+        for (Element child = DomUtils.firstChildElement(w3cElement); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            if (SymbolTable.hasName(child, symbol)) {
+                VElement<Void> el = wrap(child);
+                if (predicate.test(el)) {
+                    return el;
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -226,7 +368,49 @@ public final class VElement<P> {
      * Returns <code>null</null> if the underlying element does not exist or no such named child exists.
      */
     public VElement<Void> child(String name) {
-        return child(name, vElement -> true);
+        if (!exist()) {
+            return null;
+        }
+        Element child = ChildIndex.firstChild(w3cElement, name);
+        return child == null ? null : wrap(child);
+    }
+
+    /**
+     * Runs the specified visitor on each child element having the specified name, without wrapping them. <p>
+     * This is intended for hot loops over wide elements. The visitor must not add or remove children of this element.
+     * Does nothing if the underlying element does not exist.
+     */
+    public VElement<P> forEachChild(String name, Consumer<Element> visitor) {
+        if (!exist()) {
+            return this;
+        }
+        List<Element> indexed = ChildIndex.children(w3cElement, name);
+        if (indexed != null) {
+            indexed.forEach(visitor);
+            return this;
+        }
+        String symbol = SymbolTable.of(name);
+        for (Element child = DomUtils.firstChildElement(w3cElement); child != null;
+             child = DomUtils.nextSiblingElement(child)) {
+            if (SymbolTable.hasName(child, symbol)) {
+                visitor.accept(child);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Indexes the child elements of this element by name, so {@link #get(String)}, {@link #child(String)},
+     * {@link #children(String)} and alike no longer scan all children. This pays off on wide elements
+     * looked up repeatedly. <p>
+     * The index is built on first lookup, then maintained by the methods of this class. If children are
+     * modified through the W3C API, invoke this method again to discard the index.
+     * @throws IllegalStateException if the underlying element does not exist.
+     */
+    public VElement<P> indexChildren() {
+        assertWritable();
+        ChildIndex.enable(w3cElement);
+        return this;
     }
 
 
@@ -238,15 +422,20 @@ public final class VElement<P> {
      */
     @Deprecated
     public List<VElement> xPath(XPathExpression xPathExpression) {
-        List<VElement<VElement<P>>> result = new LinkedList<>();
+        List<VElement<VElement<P>>> result = new ArrayList<>();
         final NodeList nodeList;
+        LazySource.loadAll(w3cElement.getOwnerDocument());
+        long start = Metrics.enabled() ? System.nanoTime() : 0;
         try {
             nodeList = (NodeList) xPathExpression.evaluate(w3cElement, XPathConstants.NODESET);
         } catch (XPathExpressionException e) {
             throw new IllegalStateException("Error when evaluating xPath expression " + xPathExpression, e);
         }
+        if (start != 0) {
+            Metrics.current().xPathEvaluated(System.nanoTime() - start, nodeList.getLength());
+        }
         for (int i = 0; i < nodeList.getLength(); i++) {
-            VElement el = new VElement(this, (Element) nodeList.item(i));
+            VElement el = wrap((Element) nodeList.item(i));
             result.add(el);
         }
         return Collections.unmodifiableList(result);
@@ -270,9 +459,11 @@ public final class VElement<P> {
      * created element.
      */
     public VElement<P> addSibling(String name) {
-        assertExist();
-        Element newElement = w3cElement.getOwnerDocument().createElement(name);
+        assertWritable();
+        EditTracker.contentChanging(w3cElement.getParentNode());
+        Element newElement = w3cElement.getOwnerDocument().createElement(SymbolTable.of(name));
         w3cElement.getParentNode().insertBefore(newElement, w3cElement);
+        ChildIndex.invalidate(w3cElement.getParentNode());
         return VElement.of(this.__, newElement);
     }
 
@@ -280,12 +471,56 @@ public final class VElement<P> {
      * Removes the underlying element from its parent children.
      */
     public VElement<P> remove() {
-        assertExist();
+        assertWritable();
         Element parent = (Element) w3cElement.getParentNode();
+        EditTracker.contentChanging(parent);
         parent.removeChild(w3cElement);
+        ChildIndex.removed(parent, w3cElement);
+        evictWrapper();
         return this;
     }
 
+    /**
+     * Removes the child elements having the specified name and verifying the specified predicate, in a single
+     * pass over the children. This method returns this element.
+     * Does nothing if the underlying element does not exist.
+     */
+    public VElement<P> removeChildren(String name, Predicate<VElement<Void>> predicate) {
+        if (!exist()) {
+            return this;
+        }
+        assertWritable();
+        boolean removed = false;
+        VDocument document = document();
+        String symbol = SymbolTable.of(name);
+        Element child = DomUtils.firstChildElement(w3cElement);
+        while (child != null) {
+            Element next = DomUtils.nextSiblingElement(child);
+            if (SymbolTable.hasName(child, symbol) && predicate.test(wrap(child))) {
+                contentChanging();
+                w3cElement.removeChild(child);
+                childWrappers.remove(child);
+                if (document != null) {
+                    document.evictWrapper(child);
+                }
+                removed = true;
+            }
+            child = next;
+        }
+        if (removed) {
+            ChildIndex.invalidate(w3cElement);
+        }
+        return this;
+    }
+
+    /**
+     * Removes all child elements having the specified name. This method returns this element.
+     * Does nothing if the underlying element does not exist.
+     */
+    public VElement<P> removeChildren(String name) {
+        return removeChildren(name, el -> true);
+    }
+
     /**
      * Runs the specified consumer with this element as argument.
      */
@@ -310,10 +545,89 @@ public final class VElement<P> {
         if (!exist()) {
             this.w3cElement = proxyElement.create().w3cElement;
             this.proxyElement = null;
+            if (Metrics.enabled()) {
+                Metrics.current().proxyMaterialized();
+            }
         }
         return this;
     }
 
+    /*
+     * Returns the wrapper of the specified child having this element as parent, creating it on first call.
+     * Wrappers returned as VElement<VElement<P>> or VElement<Void> hold this element as parent alike.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> VElement<T> wrap(Element child) {
+        if (frozen) {
+            return (VElement<T>) new VElement<>(this, child);
+        }
+        if (childWrappers == null) {
+            childWrappers = new IdentityHashMap<>(4);
+        }
+        VElement<?> wrapper = childWrappers.get(child);
+        if (wrapper == null) {
+            wrapper = new VElement<>(this, child);
+            childWrappers.put(child, wrapper);
+            if (childWrappers.size() > sweepSize) {
+                sweepChildWrappers();
+            }
+        }
+        return (VElement<T>) wrapper;
+    }
+
+    /*
+     * Drops the wrappers of elements no longer under this element, as the ones removed or moved through
+     * other wrappers or through the W3C API. Runs each time the cache doubles, so it costs O(1) per wrapper.
+     */
+    private void sweepChildWrappers() {
+        childWrappers.keySet().removeIf(element -> !isAncestorOf(element));
+        sweepSize = Math.max(MIN_SWEEP_SIZE, childWrappers.size() * 2);
+    }
+
+    /*
+     * To be called before changing the children or text of the underlying element. Content not loaded yet from
+     * a lazy source is loaded first, so that it is not appended after the change later on.
+     */
+    private void contentChanging() {
+        LazySource.load(w3cElement);
+        EditTracker.contentChanging(w3cElement);
+    }
+
+    private boolean isAncestorOf(Element element) {
+        for (Node node = element.getParentNode(); node != null; node = node.getParentNode()) {
+            if (node == w3cElement) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Drops the cached wrapper of this element from its parent wrapper and from its document, once the element
+     * has been removed or moved.
+     */
+    private void evictWrapper() {
+        if (__ instanceof VElement && ((VElement<?>) __).childWrappers != null) {
+            ((VElement<?>) __).childWrappers.remove(w3cElement);
+        }
+        VDocument document = document();
+        if (document != null) {
+            document.evictWrapper(w3cElement);
+        }
+    }
+
+    private VDocument document() {
+        Object parent = __;
+        while (parent instanceof VElement) {
+            parent = ((VElement<?>) parent).__;
+        }
+        return parent instanceof VDocument ? (VDocument) parent : null;
+    }
+
+    int cachedWrapperCount() {
+        return childWrappers == null ? 0 : childWrappers.size();
+    }
+
     private void assertExist() {
         if (w3cElement == null) {
             throw new IllegalStateException("Element " + this + " does not exist. " +
@@ -321,6 +635,13 @@ public final class VElement<P> {
         }
     }
 
+    private void assertWritable() {
+        assertExist();
+        if (frozen || VDocument.isFrozen(w3cElement.getOwnerDocument())) {
+            throw new IllegalStateException("Element " + this + " belongs to a frozen document and cannot be modified.");
+        }
+    }
+
     private String getName() {
         if (exist()) {
             return w3cElement.getNodeName();
@@ -336,6 +657,29 @@ public final class VElement<P> {
         return this.__ + "/" + getName();
     }
 
+    /*
+     * Unmodifiable snapshot of child elements, wrapped on access.
+     */
+    private final class ChildList extends AbstractList<VElement<Void>> implements RandomAccess {
+
+        private final List<Element> elements;
+
+        private ChildList(List<Element> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public VElement<Void> get(int index) {
+            return wrap(elements.get(index));
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+
+    }
+
     private static class ElementProxy {
 
         private final VElement parent;
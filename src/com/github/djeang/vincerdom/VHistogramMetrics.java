@@ -0,0 +1,232 @@
+package com.github.djeang.vincerdom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link VMetrics} keeping measures in memory, as histograms with power-of-two buckets. Recording is
+ * lock-free, so it can stay installed in production and be read periodically to feed a monitoring system.
+ * <pre><code>
+ * VHistogramMetrics metrics = VHistogramMetrics.of();
+ * VMetrics.install(metrics);
+ * ...
+ * long p99ParseMillis = metrics.parseNanos().percentile(0.99) / 1_000_000;
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VHistogramMetrics implements VMetrics {
+
+    private final Histogram parseNanos = new Histogram();
+
+    private final Histogram parseBytes = new Histogram();
+
+    private final Histogram parseNodes = new Histogram();
+
+    private final Histogram printNanos = new Histogram();
+
+    private final Histogram printBytes = new Histogram();
+
+    private final Histogram xPathCompileNanos = new Histogram();
+
+    private final Histogram xPathEvaluateNanos = new Histogram();
+
+    private final LongAdder xPathCacheHits = new LongAdder();
+
+    private final LongAdder proxyMaterializations = new LongAdder();
+
+    /**
+     * Public for {@link java.util.ServiceLoader}. Prefer {@link #of()}.
+     */
+    public VHistogramMetrics() {
+    }
+
+    public static VHistogramMetrics of() {
+        return new VHistogramMetrics();
+    }
+
+    @Override
+    public void parsed(long nanos, long bytes, long nodeCount) {
+        parseNanos.record(nanos);
+        if (bytes >= 0) {
+            parseBytes.record(bytes);
+        }
+        parseNodes.record(nodeCount);
+    }
+
+    @Override
+    public void printed(long nanos, long bytes) {
+        printNanos.record(nanos);
+        if (bytes >= 0) {
+            printBytes.record(bytes);
+        }
+    }
+
+    @Override
+    public void xPathCompiled(long nanos) {
+        xPathCompileNanos.record(nanos);
+    }
+
+    @Override
+    public void xPathCacheHit() {
+        xPathCacheHits.increment();
+    }
+
+    @Override
+    public void xPathEvaluated(long nanos, int resultCount) {
+        xPathEvaluateNanos.record(nanos);
+    }
+
+    @Override
+    public void proxyMaterialized() {
+        proxyMaterializations.increment();
+    }
+
+    public Histogram parseNanos() {
+        return parseNanos;
+    }
+
+    public Histogram parseBytes() {
+        return parseBytes;
+    }
+
+    public Histogram parseNodes() {
+        return parseNodes;
+    }
+
+    public Histogram printNanos() {
+        return printNanos;
+    }
+
+    public Histogram printBytes() {
+        return printBytes;
+    }
+
+    public Histogram xPathCompileNanos() {
+        return xPathCompileNanos;
+    }
+
+    public Histogram xPathEvaluateNanos() {
+        return xPathEvaluateNanos;
+    }
+
+    public long xPathCacheHits() {
+        return xPathCacheHits.sum();
+    }
+
+    public long proxyMaterializations() {
+        return proxyMaterializations.sum();
+    }
+
+    /**
+     * Discards all measures recorded so far.
+     */
+    public void reset() {
+        parseNanos.reset();
+        parseBytes.reset();
+        parseNodes.reset();
+        printNanos.reset();
+        printBytes.reset();
+        xPathCompileNanos.reset();
+        xPathEvaluateNanos.reset();
+        xPathCacheHits.reset();
+        proxyMaterializations.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "parse time(ns)=" + parseNanos + ", parse bytes=" + parseBytes + ", parse nodes=" + parseNodes
+                + ", print time(ns)=" + printNanos + ", print bytes=" + printBytes
+                + ", xPath compile time(ns)=" + xPathCompileNanos + ", xPath evaluate time(ns)=" + xPathEvaluateNanos
+                + ", xPath cache hits=" + xPathCacheHits() + ", make() materializations=" + proxyMaterializations();
+    }
+
+    /**
+     * Distribution of non-negative values. Bucket <i>i</i> counts values having <i>i</i> significant bits,
+     * so percentiles are approximated within a factor of 2. Reads are not atomic with respect to concurrent
+     * records.
+     */
+    public static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {
+        }
+
+        void record(long value) {
+            long positive = Math.max(value, 0);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(positive));
+            count.increment();
+            sum.add(positive);
+            max.accumulate(positive);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * Returns the mean of recorded values, or 0 if none.
+         */
+        public double mean() {
+            long currentCount = count();
+            return currentCount == 0 ? 0 : (double) sum() / currentCount;
+        }
+
+        /**
+         * Returns an upper bound of the specified percentile, expressed in [0, 1], within a factor of 2 and never
+         * greater than {@link #max()}. Returns 0 if no value has been recorded.
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 1) {
+                throw new IllegalArgumentException("Percentile must be in [0, 1] : " + percentile);
+            }
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    long upperBound = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, max());
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count() + ", mean=" + (long) mean() + ", p50=" + percentile(0.5)
+                    + ", p99=" + percentile(0.99) + ", max=" + max() + "}";
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.djeang.vincerdom;
+
+/**
+ * Receives measures of the operations performed by vincer-dom, so they can be exported to any monitoring
+ * system. Methods do nothing by default, so implementations override only what they need. <p>
+ * The instance in use is the one passed to {@link #install(VMetrics)} or, if none, the first implementation
+ * declared in <code>META-INF/services/com.github.djeang.vincerdom.VMetrics</code>, or {@link #NONE}.
+ * While {@link #NONE} is in use, nothing is measured at all. Methods are called from any thread, so
+ * implementations must be thread-safe. {@link VHistogramMetrics} keeps measures in memory.
+ *
+ * @author Jerome Angibaud
+ */
+public interface VMetrics {
+
+    /**
+     * Metrics discarding every measure.
+     */
+    VMetrics NONE = new VMetrics() {
+    };
+
+    /**
+     * Called when a document has been parsed. Counting nodes walks the whole document once.
+     * @param bytes number of bytes read, or -1 if unknown.
+     * @param nodeCount number of nodes of the document, attributes excluded.
+     */
+    default void parsed(long nanos, long bytes, long nodeCount) {
+    }
+
+    /**
+     * Called when a document has been printed or saved.
+     * @param bytes number of bytes written, or -1 if unknown or printed as chars.
+     */
+    default void printed(long nanos, long bytes) {
+    }
+
+    /**
+     * Called when {@link VXPath} compiled an expression not found in cache.
+     */
+    default void xPathCompiled(long nanos) {
+    }
+
+    /**
+     * Called when {@link VXPath} found an expression in cache.
+     */
+    default void xPathCacheHit() {
+    }
+
+    /**
+     * Called when an xPath expression has been evaluated against a document.
+     */
+    default void xPathEvaluated(long nanos, int resultCount) {
+    }
+
+    /**
+     * Called when {@link VElement#make()} creates an element that did not exist.
+     */
+    default void proxyMaterialized() {
+    }
+
+    /**
+     * Makes the specified metrics receive measures from now on, in place of the current ones.
+     * Pass {@link #NONE} to stop measuring.
+     */
+    static void install(VMetrics metrics) {
+        Metrics.install(metrics);
+    }
+
+    /**
+     * Returns the metrics currently receiving measures.
+     */
+    static VMetrics installed() {
+        return Metrics.current();
+    }
+
+}
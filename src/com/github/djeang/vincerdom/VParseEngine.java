@@ -0,0 +1,26 @@
+package com.github.djeang.vincerdom;
+
+/**
+ * Parsers able to build a {@link VDocument}, selectable per call as in
+ * {@link VDocument#parse(java.nio.file.Path, VParseEngine)}.
+ *
+ * @author Jerome Angibaud
+ */
+public enum VParseEngine {
+
+    /**
+     * The {@link javax.xml.parsers.DocumentBuilder} pooled by {@link VXmlPool}. This is the default. With the JDK
+     * implementation, nodes are expanded on first access, which pays off when only a part of the document is read.
+     */
+    DOM_BUILDER,
+
+    /**
+     * A StAX reader building plain nodes as events come, without the deferred expansion of the JDK document
+     * builder. Documents take less memory once fully read, and small documents are parsed faster. <p>
+     * The reader is not namespace aware, as the default {@link VXmlPool} factories. Factories registered in
+     * {@link VXmlPool} are not used, except that documents declaring a document type are handed over to the
+     * pooled {@link javax.xml.parsers.DocumentBuilder}, so that attributes defaulted by the DTD are kept.
+     */
+    STAX
+
+}
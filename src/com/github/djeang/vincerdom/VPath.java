@@ -0,0 +1,355 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Path selector evaluated by walking child elements directly, many times faster than the JAXP XPath engine. <p>
+ * Paths made of child steps, as <code>/project/dependencies/dependency/artifactId</code> or
+ * <code>dependencies/dependency</code>, are compiled once into a list of steps. Steps are element names or
+ * <code>*</code>, optionally followed by predicates of the following forms :
+ * <ul>
+ *     <li><code>[@scope='test']</code> : the element has an attribute of this value</li>
+ *     <li><code>[artifactId='junit']</code> : the element has a child element of this text</li>
+ *     <li><code>[2]</code> : 1-based position among the matching siblings</li>
+ * </ul>
+ * Any other expression is evaluated through {@link VXPath}, with the same result. Unlike
+ * {@link javax.xml.xpath.XPathExpression}, instances are immutable, hence safe to share across threads.
+ *
+ * @author Jerome Angibaud
+ */
+public final class VPath {
+
+    static final byte ATTRIBUTE = 0;
+
+    static final byte CHILD_TEXT = 1;
+
+    static final byte POSITION = 2;
+
+    private final String expression;
+
+    private final boolean absolute;
+
+    private final Step[] steps;  // null if the expression is evaluated by VXPath
+
+    private VPath(String expression, boolean absolute, Step[] steps) {
+        this.expression = expression;
+        this.absolute = absolute;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the specified expression.
+     * @throws IllegalStateException if the expression is not a valid xPath expression.
+     */
+    public static VPath compile(String expression) {
+        VPath path = new Parser(expression).parse();
+        if (path == null) {
+            VXPath.compile(expression);  // fails early on invalid expressions
+            return new VPath(expression, false, null);
+        }
+        return path;
+    }
+
+    /**
+     * Returns <code>true</code> if this path is evaluated by walking elements, <code>false</code> if it
+     * is delegated to {@link VXPath}.
+     */
+    public boolean isSimple() {
+        return steps != null;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    boolean isAbsolute() {
+        return absolute;
+    }
+
+    Step[] steps() {
+        return steps;
+    }
+
+    /**
+     * Returns the elements selected by this path from the specified context node, in document order.
+     * Absolute paths start from the document of the context node.
+     */
+    List<Element> select(Node context) {
+        if (steps == null) {
+            return evaluateXPath(context);
+        }
+        boolean fromDocument = absolute && context.getNodeType() != Node.DOCUMENT_NODE;
+        List<? extends Node> contexts = Collections.singletonList(fromDocument ? context.getOwnerDocument() : context);
+        List<Element> result = Collections.emptyList();
+        List<Element> siblings = new ArrayList<>();
+        for (Step step : steps) {
+            boolean filtered = step.kinds.length > 0;
+            result = new ArrayList<>();
+            for (Node parent : contexts) {
+                siblings.clear();
+                for (Element child = DomUtils.firstChildElement(parent); child != null;
+                     child = DomUtils.nextSiblingElement(child)) {
+                    if (step.matches(child)) {
+                        (filtered ? siblings : result).add(child);
+                    }
+                }
+                if (filtered) {
+                    step.filter(siblings, result);
+                }
+            }
+            contexts = result;
+        }
+        return result;
+    }
+
+    private List<Element> evaluateXPath(Node context) {
+        LazySource.loadAll(context.getNodeType() == Node.DOCUMENT_NODE ? context : context.getOwnerDocument());
+        NodeList nodeList;
+        try {
+            nodeList = (NodeList) VXPath.compile(expression).evaluate(context, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new IllegalStateException("Error when evaluating xPath expression " + expression, e);
+        }
+        List<Element> result = new ArrayList<>(nodeList.getLength());
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            result.add((Element) nodeList.item(i));
+        }
+        return result;
+    }
+
+    /**
+     * Element name test followed by predicates, applied in order as XPath does : a position applies to the
+     * siblings verifying the preceding predicates.
+     */
+    static final class Step {
+
+        final String name;  // "*" for any element
+
+        final byte[] kinds;
+
+        final String[] names;
+
+        final String[] values;
+
+        final int[] positions;
+
+        private Step(String name, byte[] kinds, String[] names, String[] values, int[] positions) {
+            this.name = SymbolTable.of(name);
+            this.kinds = kinds;
+            this.names = names;
+            for (int i = 0; i < names.length; i++) {
+                names[i] = names[i] == null ? null : SymbolTable.of(names[i]);
+            }
+            this.values = values;
+            this.positions = positions;
+        }
+
+        private boolean matches(Element element) {
+            return "*".equals(name) || hasUnprefixedName(element, name);
+        }
+
+        // Unprefixed name tests do not match namespace-aware elements having a namespace, as in XPath
+        private static boolean hasUnprefixedName(Element element, String name) {
+            if (element.getLocalName() != null && element.getNamespaceURI() != null) {
+                return false;
+            }
+            return SymbolTable.hasName(element, name);
+        }
+
+        private void filter(List<Element> siblings, List<Element> result) {
+            List<Element> current = siblings;
+            for (int i = 0; i < kinds.length; i++) {
+                List<Element> next = new ArrayList<>();
+                if (kinds[i] == POSITION) {
+                    if (positions[i] <= current.size()) {
+                        next.add(current.get(positions[i] - 1));
+                    }
+                } else {
+                    for (Element element : current) {
+                        if (testCondition(i, element)) {
+                            next.add(element);
+                        }
+                    }
+                }
+                current = next;
+            }
+            result.addAll(current);
+        }
+
+        private boolean testCondition(int i, Element element) {
+            if (kinds[i] == ATTRIBUTE) {
+                return element.hasAttribute(names[i]) && values[i].equals(element.getAttribute(names[i]));
+            }
+            for (Element child = DomUtils.firstChildElement(element, names[i]); child != null;
+                 child = DomUtils.nextSiblingElement(child)) {
+                LazySource.loadAll(child);
+                if (hasUnprefixedName(child, names[i]) && values[i].equals(child.getTextContent())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /*
+     * Parses the expression into steps, or returns null if it uses anything beyond the supported subset.
+     */
+    private static final class Parser {
+
+        private final String expression;
+
+        private int index;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        VPath parse() {
+            boolean absolute = expression.startsWith("/");
+            index = absolute ? 1 : 0;
+            List<Step> steps = new ArrayList<>();
+            while (true) {
+                Step step = step();
+                if (step == null) {
+                    return null;
+                }
+                steps.add(step);
+                if (index == expression.length()) {
+                    return new VPath(expression, absolute, steps.toArray(new Step[0]));
+                }
+                if (expression.charAt(index) != '/') {
+                    return null;
+                }
+                index++;
+            }
+        }
+
+        private Step step() {
+            String name = "*";
+            if (index < expression.length() && expression.charAt(index) == '*') {
+                index++;
+            } else {
+                name = name();
+                if (name == null) {
+                    return null;
+                }
+            }
+            List<Byte> kinds = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            while (index < expression.length() && expression.charAt(index) == '[') {
+                index++;
+                skipSpaces();
+                if (index == expression.length()) {
+                    return null;
+                }
+                char c = expression.charAt(index);
+                if (c >= '1' && c <= '9') {
+                    int start = index;
+                    while (index < expression.length() && Character.isDigit(expression.charAt(index))
+                            && index - start < 9) {
+                        index++;
+                    }
+                    kinds.add(POSITION);
+                    names.add(null);
+                    values.add(null);
+                    positions.add(Integer.parseInt(expression.substring(start, index)));
+                } else {
+                    boolean attribute = c == '@';
+                    if (attribute) {
+                        index++;
+                    }
+                    String conditionName = name();
+                    if (conditionName == null) {
+                        return null;
+                    }
+                    skipSpaces();
+                    if (!consume('=')) {
+                        return null;
+                    }
+                    skipSpaces();
+                    String value = literal();
+                    if (value == null) {
+                        return null;
+                    }
+                    kinds.add(attribute ? ATTRIBUTE : CHILD_TEXT);
+                    names.add(conditionName);
+                    values.add(value);
+                    positions.add(0);
+                }
+                skipSpaces();
+                if (!consume(']')) {
+                    return null;
+                }
+            }
+            byte[] kindArray = new byte[kinds.size()];
+            int[] positionArray = new int[kinds.size()];
+            for (int i = 0; i < kindArray.length; i++) {
+                kindArray[i] = kinds.get(i);
+                positionArray[i] = positions.get(i);
+            }
+            return new Step(name, kindArray, names.toArray(new String[0]), values.toArray(new String[0]),
+                    positionArray);
+        }
+
+        // Stops at ':', so prefixed names are left to VXPath
+        private String name() {
+            int start = index;
+            while (index < expression.length() && isNameChar(expression.charAt(index), index == start)) {
+                index++;
+            }
+            return index == start ? null : expression.substring(start, index);
+        }
+
+        private String literal() {
+            if (index == expression.length()) {
+                return null;
+            }
+            char quote = expression.charAt(index);
+            if (quote != '\'' && quote != '"') {
+                return null;
+            }
+            int end = expression.indexOf(quote, index + 1);
+            if (end < 0) {
+                return null;
+            }
+            String result = expression.substring(index + 1, end);
+            index = end + 1;
+            return result;
+        }
+
+        private boolean consume(char c) {
+            if (index < expression.length() && expression.charAt(index) == c) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (index < expression.length() && Character.isWhitespace(expression.charAt(index))) {
+                index++;
+            }
+        }
+
+        private static boolean isNameChar(char c, boolean first) {
+            if (Character.isLetter(c) || c == '_') {
+                return true;
+            }
+            return !first && (Character.isDigit(c) || c == '-' || c == '.');
+        }
+
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of parsed documents, for reading large files that rarely change much faster than by parsing
+ * them again. <p>
+ * A snapshot holds the document structure as arrays of node kinds, name ids and subtree ends, a table of the
+ * element and attribute names and a single blob of the text and attribute values. It is memory-mapped when
+ * loaded and elements are built only when navigated to, as for {@link VDocument#parseLazy(Path)}. <p>
+ * Snapshots of a file are saved next to it, with the <code>.vsnap</code> extension appended. They record the
+ * size, last modification time and checksum of the file they come from and are rewritten when it changes.
+ * Document type declarations are not kept.
+ * <pre><code>
+ * VDocument pom = VSnapshot.parse(Paths.get("pom.xml"));  // parses and writes pom.xml.vsnap the first time
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VSnapshot {
+
+    static final int MAGIC = 0x50534E56;  // "VNSP" little endian
+
+    static final int VERSION = 1;
+
+    static final byte ELEMENT = 0;
+
+    static final byte TEXT = 1;
+
+    static final byte CDATA = 2;
+
+    static final byte COMMENT = 3;
+
+    static final byte PROCESSING_INSTRUCTION = 4;
+
+    static final byte DOCUMENT = 5;
+
+    static final int NONE = -1;
+
+    private static final String EXTENSION = ".vsnap";
+
+    private static final long RACY_DELAY = 3000;  // beyond timestamp granularity of common file systems
+
+    private VSnapshot() {
+    }
+
+    /**
+     * Returns the snapshot file of the specified XML file : a sibling file named after it with the
+     * <code>.vsnap</code> extension appended.
+     */
+    public static Path snapshotFileOf(Path xmlFile) {
+        return xmlFile.resolveSibling(xmlFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Returns the specified XML file content, loaded from its snapshot file if up to date. Otherwise the file
+     * is parsed and its snapshot file written for the next calls. The returned document is bound to the
+     * XML file, as with {@link VDocument#parse(Path)}. <p>
+     * Snapshot files are a cache : a snapshot file that cannot be read is ignored and one that cannot be
+     * written, as in a read-only directory, is skipped.
+     */
+    public static VDocument parse(Path xmlFile) {
+        Path snapshotFile = snapshotFileOf(xmlFile);
+        if (isUpToDate(snapshotFile, xmlFile, true)) {
+            try {
+                return VDocument.of(SnapshotReader.open(snapshotFile).toDocument(), xmlFile);
+            } catch (RuntimeException e) {
+                // corrupted or too large snapshot file : parse again
+            }
+        }
+        long[] stamp = stamp(xmlFile);
+        VDocument result = VDocument.parse(xmlFile);
+        tryWrite(result.getW3cDocument(), snapshotFile, stamp);
+        return result;
+    }
+
+    /**
+     * Same as {@link #parse(Path)} but returning a {@link VCompactDocument}.
+     */
+    public static VCompactDocument parseCompact(Path xmlFile) {
+        Path snapshotFile = snapshotFileOf(xmlFile);
+        if (isUpToDate(snapshotFile, xmlFile, true)) {
+            try {
+                return loadCompact(snapshotFile);
+            } catch (RuntimeException e) {
+                // corrupted or too large snapshot file : parse again
+            }
+        }
+        long[] stamp = stamp(xmlFile);
+        if (tryWrite(VDocument.parse(xmlFile).getW3cDocument(), snapshotFile, stamp)) {
+            try {
+                return loadCompact(snapshotFile);
+            } catch (RuntimeException e) {
+                // snapshot replaced or too large meanwhile
+            }
+        }
+        return VCompactDocument.parse(xmlFile);
+    }
+
+    /**
+     * Writes a snapshot of the specified document to the specified file. The snapshot is not bound to any
+     * source file, so {@link #isUpToDate(Path, Path)} never holds for it.
+     */
+    public static void write(VDocument document, Path snapshotFile) {
+        write(document.getW3cDocument(), snapshotFile, new long[] {-1, 0, 0});
+    }
+
+    /**
+     * Loads the document saved in the specified snapshot file. The returned document is not bound to any file.
+     *
+     * @throws IllegalStateException if the file is not a snapshot file of the current format version.
+     */
+    public static VDocument load(Path snapshotFile) {
+        return VDocument.of(SnapshotReader.open(snapshotFile).toDocument());
+    }
+
+    /**
+     * Loads the document saved in the specified snapshot file as a {@link VCompactDocument}.
+     *
+     * @throws IllegalStateException if the file is not a snapshot file of the current format version.
+     */
+    public static VCompactDocument loadCompact(Path snapshotFile) {
+        return SnapshotReader.open(snapshotFile).toCompactDocument();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified snapshot file exists and has been taken from the current
+     * content of the specified XML file. Files with the same size and last modification time are deemed
+     * unchanged. Otherwise, when the size only is the same, checksums of the content are compared.
+     */
+    public static boolean isUpToDate(Path snapshotFile, Path xmlFile) {
+        return isUpToDate(snapshotFile, xmlFile, false);
+    }
+
+    // When matching by checksum only, the snapshot can be restamped with the current modification time of the
+    // XML file, so that next checks need not read it again.
+    private static boolean isUpToDate(Path snapshotFile, Path xmlFile, boolean restamp) {
+        if (!Files.isRegularFile(snapshotFile) || !Files.isRegularFile(xmlFile)) {
+            return false;
+        }
+        long[] recorded = SnapshotReader.readStamp(snapshotFile);
+        if (recorded == null) {
+            return false;
+        }
+        BasicFileAttributes attributes = attributes(xmlFile);
+        if (attributes.size() != recorded[0]) {
+            return false;
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (modified == recorded[1]) {
+            return true;
+        }
+        if (checksum(xmlFile) != recorded[2]) {
+            return false;
+        }
+        if (restamp && !isRacy(modified)) {
+            SnapshotWriter.restamp(snapshotFile, modified);
+        }
+        return true;
+    }
+
+    private static void write(Document document, Path snapshotFile, long[] stamp) {
+        FileSupport.writeAtomically(snapshotFile,
+                temp -> SnapshotWriter.write(document, temp, stamp[0], stamp[1], stamp[2]));
+    }
+
+    private static boolean tryWrite(Document document, Path snapshotFile, long[] stamp) {
+        try {
+            write(document, snapshotFile, stamp);
+            return true;
+        } catch (UncheckedIOException e) {
+            return false;
+        }
+    }
+
+    // Taken before parsing, so that a change made while parsing makes the snapshot stale. The modification time
+    // of a file modified just before is not recorded : a later change within the same timestamp tick would keep
+    // it, so such snapshots are always checked against the checksum.
+    private static long[] stamp(Path xmlFile) {
+        BasicFileAttributes attributes = attributes(xmlFile);
+        long modified = attributes.lastModifiedTime().toMillis();
+        return new long[] {attributes.size(), isRacy(modified) ? NONE : modified, checksum(xmlFile)};
+    }
+
+    private static boolean isRacy(long modified) {
+        return System.currentTimeMillis() - modified < RACY_DELAY;
+    }
+
+    private static BasicFileAttributes attributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long checksum(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < channel.size(); position += Integer.MAX_VALUE) {
+                long size = Math.min(Integer.MAX_VALUE, channel.size() - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                crc.update(buffer);
+            }
+            return crc.getValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader handing over selected subtrees of a document, one at a time, without loading the whole
+ * document in memory. <p>
+ * Only elements matching a registered path are turned into {@link VElement}s. Each one is passed to its handler
+ * then discarded, so memory stays bounded by the size of the largest selected subtree.
+ * <pre><code>
+ * VStreamReader.of()
+ *     .on("/project/dependencies/dependency", dep -&gt; System.out.println(dep.get("artifactId").text()))
+ *     .read(Paths.get("pom.xml"));
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VStreamReader {
+
+    private final Map<String[], Consumer<VElement<Void>>> handlers = new LinkedHashMap<>();
+
+    private VStreamReader() {
+    }
+
+    /**
+     * Creates a reader with no handler registered.
+     */
+    public static VStreamReader of() {
+        return new VStreamReader();
+    }
+
+    /**
+     * Registers a handler called for each element matching the specified absolute path
+     * (as <code>/project/dependencies/dependency</code>). Elements nested in an already selected subtree
+     * are not matched again.
+     */
+    public VStreamReader on(String path, Consumer<VElement<Void>> handler) {
+        handlers.put(StaxSupport.parsePath(path), handler);
+        return this;
+    }
+
+    /**
+     * Reads the specified stream, calling handlers on selected elements. The stream is not closed.
+     */
+    public void read(InputStream inputStream) {
+        XMLStreamReader reader = null;
+        try {
+            reader = VXmlPool.inputFactory().createXMLStreamReader(inputStream);
+            read(reader);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * Reads the specified file, calling handlers on selected elements.
+     */
+    public void read(Path xmlFile) {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(xmlFile))) {
+            read(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void read(XMLStreamReader reader) throws XMLStreamException {
+        Document scratch = VXmlPool.documentBuilder().newDocument();
+        Element holder = scratch.createElement("stream");  // lets handlers remove or add siblings
+        scratch.appendChild(holder);
+        List<String> stack = new ArrayList<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                stack.add(StaxSupport.name(reader));
+                Consumer<VElement<Void>> handler = StaxSupport.handler(handlers, stack);
+                if (handler != null) {
+                    Element element = StaxSupport.readElement(reader, scratch);
+                    holder.appendChild(element);
+                    handler.accept(VElement.of(element));
+                    holder.setTextContent(null);
+                    stack.remove(stack.size() - 1);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                stack.remove(stack.size() - 1);
+            }
+        }
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
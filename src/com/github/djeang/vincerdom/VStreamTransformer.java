@@ -0,0 +1,234 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Streaming rewriter copying a document from input to output while letting selected subtrees be edited. <p>
+ * Events are copied through unchanged, except for elements matching a registered path : these are turned into
+ * {@link VElement}s, handed to their handler, then written back as modified. Handlers can use the whole
+ * parent-chaining API on the element, including removing it or adding siblings before it.
+ * Memory stays bounded by the size of the largest selected subtree, whatever the input size. <p>
+ * Output is encoded in UTF-8. The XML declaration is kept, standalone and following line breaks included, but
+ * other whitespace outside the root element, as a trailing line break, is not reported by StAX and is lost.
+ * <pre><code>
+ * VStreamTransformer.of()
+ *     .on("/project/dependencies/dependency", dep -&gt; dep.get("version").make().text("1.0"))
+ *     .transform(Paths.get("pom.xml"), Paths.get("pom-edited.xml"));
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VStreamTransformer {
+
+    private static final int DECLARATION_LOOKAHEAD = 256;
+
+    private static final String UTF8_BOM = "\u00EF\u00BB\u00BF";  // as decoded in ISO-8859-1
+
+    private final Map<String[], Consumer<VElement<Void>>> handlers = new LinkedHashMap<>();
+
+    private VStreamTransformer() {
+    }
+
+    /**
+     * Creates a transformer with no handler registered. As is, it copies input to output.
+     */
+    public static VStreamTransformer of() {
+        return new VStreamTransformer();
+    }
+
+    /**
+     * Registers a handler called for each element matching the specified absolute path
+     * (as <code>/project/dependencies/dependency</code>). Elements nested in an already selected subtree
+     * are not matched again.
+     */
+    public VStreamTransformer on(String path, Consumer<VElement<Void>> handler) {
+        handlers.put(StaxSupport.parsePath(path), handler);
+        return this;
+    }
+
+    /**
+     * Copies the specified input to the specified output as UTF-8, applying handlers on selected elements.
+     * Streams are not closed.
+     */
+    public void transform(InputStream inputStream, OutputStream outputStream) {
+        XMLStreamReader reader = null;
+        XMLStreamWriter writer = null;
+        try {
+            BufferedInputStream in = new BufferedInputStream(inputStream);
+            String declarationSpace = spaceAfterDeclaration(in);
+            reader = VXmlPool.inputFactory().createXMLStreamReader(in);
+            if (reader.getVersion() != null) {
+                writeDeclaration(reader, declarationSpace, outputStream);
+            }
+            writer = VXmlPool.outputFactory().createXMLStreamWriter(outputStream, "UTF-8");
+            transform(reader, writer);
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            close(reader, writer);
+        }
+    }
+
+    /**
+     * Copies the specified input file to the specified output file, applying handlers on selected elements.
+     * Output is first written in a temporary file, so input and output may be the same file.
+     */
+    public void transform(Path input, Path output) {
+        FileSupport.writeAtomically(output, temp -> {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(input));
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                transform(in, out);
+            }
+        });
+    }
+
+    private void transform(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        Document scratch = VXmlPool.documentBuilder().newDocument();
+        Element holder = scratch.createElement("stream");  // lets handlers remove or add siblings
+        scratch.appendChild(holder);
+        List<String> stack = new ArrayList<>();
+        PendingStart pendingStart = new PendingStart();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                pendingStart.flush(writer, false);
+                stack.add(StaxSupport.name(reader));
+                Consumer<VElement<Void>> handler = StaxSupport.handler(handlers, stack);
+                if (handler == null) {
+                    pendingStart.record(reader, stack.get(stack.size() - 1));
+                    continue;
+                }
+                Element element = StaxSupport.readElement(reader, scratch);
+                holder.appendChild(element);
+                handler.accept(VElement.of(element));
+                for (Node node = holder.getFirstChild(); node != null; node = node.getNextSibling()) {
+                    StaxSupport.writeNode(node, writer);
+                }
+                holder.setTextContent(null);
+                stack.remove(stack.size() - 1);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                stack.remove(stack.size() - 1);
+                if (!pendingStart.flush(writer, true)) {
+                    writer.writeEndElement();
+                }
+            } else {
+                pendingStart.flush(writer, false);
+                StaxSupport.copyEvent(reader, writer);
+            }
+        }
+    }
+
+    /*
+     * Returns the whitespace following the XML declaration, which StAX does not report. The declaration starting
+     * the document, only the first bytes are looked at, then the stream is reset.
+     */
+    private static String spaceAfterDeclaration(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[DECLARATION_LOOKAHEAD];
+        in.mark(head.length);
+        int length = 0;
+        int count;
+        while (length < head.length && (count = in.read(head, length, head.length - length)) >= 0) {
+            length += count;
+        }
+        in.reset();
+        String text = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        int start = text.startsWith(UTF8_BOM) ? UTF8_BOM.length() : 0;
+        int end = text.indexOf("?>");
+        if (!text.startsWith("<?xml", start) || end < 0) {
+            return "";
+        }
+        int spaceEnd = end + 2;
+        while (spaceEnd < length && " \t\r\n".indexOf(text.charAt(spaceEnd)) >= 0) {
+            spaceEnd++;
+        }
+        return text.substring(end + 2, spaceEnd);
+    }
+
+    // Written to the stream as XMLStreamWriter has no way to declare standalone documents
+    private static void writeDeclaration(XMLStreamReader reader, String space, OutputStream out) throws IOException {
+        StringBuilder declaration = new StringBuilder("<?xml version=\"").append(reader.getVersion())
+                .append("\" encoding=\"UTF-8\"");
+        if (reader.standaloneSet()) {
+            declaration.append(" standalone=\"").append(reader.isStandalone() ? "yes" : "no").append('"');
+        }
+        declaration.append("?>").append(space);
+        out.write(declaration.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void close(XMLStreamReader reader, XMLStreamWriter writer) {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * Start elements are written lazily, so elements having no content can be written as empty elements.
+     */
+    private static final class PendingStart {
+
+        private String name;
+
+        private final List<String> attributes = new ArrayList<>();
+
+        void record(XMLStreamReader reader, String elementName) {
+            this.name = elementName;
+            attributes.clear();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.add(StaxSupport.attributeName(reader, i));
+                attributes.add(reader.getAttributeValue(i));
+            }
+        }
+
+        /*
+         * Writes the pending start element, if any. Returns false if there was none.
+         */
+        boolean flush(XMLStreamWriter writer, boolean empty) throws XMLStreamException {
+            if (name == null) {
+                return false;
+            }
+            if (empty) {
+                writer.writeEmptyElement(name);
+            } else {
+                writer.writeStartElement(name);
+            }
+            for (int i = 0; i < attributes.size(); i += 2) {
+                writer.writeAttribute(attributes.get(i), attributes.get(i + 1));
+            }
+            name = null;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Precompiled copy of a document or element, to create many identical documents or subtrees at low cost. <p>
+ * The source tree is walked once and recorded as a flat list of construction steps. Each new copy
+ * replays these steps against the W3C factory methods, without reading any source node. Later changes on
+ * the source do not affect the template. Templates are immutable, hence safe to share across threads.
+ * <pre><code>
+ * VTemplate template = VTemplate.of(VDocument.parse(Paths.get("invoice-template.xml")));
+ * for (Order order : orders) {
+ *     VDocument invoice = template.newDocument();
+ *     invoice.root().get("number").text(order.number());
+ *     ...
+ * }
+ * </code></pre>
+ *
+ * @author Jerome Angibaud
+ */
+public final class VTemplate {
+
+    private static final byte START = 0;
+
+    private static final byte END = 1;
+
+    private static final byte ATTRIBUTE = 2;
+
+    private static final byte TEXT = 3;
+
+    private static final byte CDATA = 4;
+
+    private static final byte COMMENT = 5;
+
+    private static final byte PROCESSING_INSTRUCTION = 6;
+
+    private static final byte DOCUMENT_TYPE = 7;
+
+    private final byte[] steps;
+
+    private final String[] args;  // step arguments in sequence : namespace URI and names for elements and attributes
+
+    private VTemplate(byte[] steps, String[] args) {
+        this.steps = steps;
+        this.args = args;
+    }
+
+    /**
+     * Creates a template of the specified document, including comments and processing instructions lying
+     * outside the root element. The document type declaration is kept without its internal subset, which the
+     * W3C API cannot recreate.
+     */
+    public static VTemplate of(VDocument document) {
+        Compiler compiler = new Compiler();
+        Document w3cDocument = document.getW3cDocument();
+        for (Node child = w3cDocument.getFirstChild(); child != null; child = child.getNextSibling()) {
+            compiler.compile(child);
+        }
+        return compiler.toTemplate();
+    }
+
+    /**
+     * Creates a template of the specified element and its descendants.
+     * @throws IllegalStateException if the specified element does not exist.
+     */
+    public static VTemplate of(VElement<?> element) {
+        if (!element.exist()) {
+            throw new IllegalStateException("Element " + element + " does not exist.");
+        }
+        Compiler compiler = new Compiler();
+        compiler.compile(element.getW3cElement());
+        return compiler.toTemplate();
+    }
+
+    /**
+     * Creates a new document from this template. For element templates, the element becomes the root.
+     */
+    public VDocument newDocument() {
+        Document doc = VXmlPool.documentBuilder().newDocument();
+        build(doc, doc);
+        return VDocument.of(doc);
+    }
+
+    /**
+     * Replays the steps of this template under the specified parent, belonging to the specified document.
+     * Returns the last top-level element created.
+     */
+    Element build(Document doc, Node parent) {
+        boolean strictErrorChecking = doc.getStrictErrorChecking();
+        doc.setStrictErrorChecking(false);  // content comes from a well-formed tree
+        try {
+            Node current = parent;
+            Element result = null;
+            int arg = 0;
+            for (byte step : steps) {
+                switch (step) {
+                    case START:
+                        String namespace = args[arg++];
+                        String name = args[arg++];
+                        Element element = namespace == null ? doc.createElement(name)
+                                : doc.createElementNS(namespace, name);
+                        current.appendChild(element);
+                        if (current == parent) {
+                            result = element;
+                        }
+                        current = element;
+                        break;
+                    case END:
+                        current = current.getParentNode();
+                        break;
+                    case ATTRIBUTE:
+                        String attributeNamespace = args[arg++];
+                        String attributeName = args[arg++];
+                        String value = args[arg++];
+                        if (attributeNamespace == null) {
+                            ((Element) current).setAttribute(attributeName, value);
+                        } else {
+                            ((Element) current).setAttributeNS(attributeNamespace, attributeName, value);
+                        }
+                        break;
+                    case TEXT:
+                        current.appendChild(doc.createTextNode(args[arg++]));
+                        break;
+                    case CDATA:
+                        current.appendChild(doc.createCDATASection(args[arg++]));
+                        break;
+                    case COMMENT:
+                        current.appendChild(doc.createComment(args[arg++]));
+                        break;
+                    case DOCUMENT_TYPE:
+                        if (current.getNodeType() == Node.DOCUMENT_NODE) {  // not when added under an element
+                            current.appendChild(doc.getImplementation().createDocumentType(args[arg],
+                                    args[arg + 1], args[arg + 2]));
+                        }
+                        arg += 3;
+                        break;
+                    default:
+                        current.appendChild(doc.createProcessingInstruction(args[arg], args[arg + 1]));
+                        arg += 2;
+                        break;
+                }
+            }
+            return result;
+        } finally {
+            doc.setStrictErrorChecking(strictErrorChecking);
+        }
+    }
+
+    private static final class Compiler {
+
+        private byte[] steps = new byte[64];
+
+        private int stepCount;
+
+        private final List<String> args = new ArrayList<>();
+
+        void compile(Node node) {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    step(START, node.getNamespaceURI(), SymbolTable.of(node.getNodeName()));
+                    NamedNodeMap attributes = node.getAttributes();
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        Attr attribute = (Attr) attributes.item(i);
+                        if (attribute.getSpecified()) {
+                            step(ATTRIBUTE, attribute.getNamespaceURI(), SymbolTable.of(attribute.getName()),
+                                    attribute.getValue());
+                        }
+                    }
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        compile(child);
+                    }
+                    step(END);
+                    break;
+                case Node.TEXT_NODE:
+                    step(TEXT, node.getNodeValue());
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    step(CDATA, node.getNodeValue());
+                    break;
+                case Node.COMMENT_NODE:
+                    step(COMMENT, node.getNodeValue());
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    step(PROCESSING_INSTRUCTION, node.getNodeName(), node.getNodeValue());
+                    break;
+                case Node.ENTITY_REFERENCE_NODE:
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        compile(child);
+                    }
+                    break;
+                case Node.DOCUMENT_TYPE_NODE:
+                    DocumentType documentType = (DocumentType) node;
+                    step(DOCUMENT_TYPE, documentType.getName(), documentType.getPublicId(),
+                            documentType.getSystemId());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void step(byte step, String... stepArgs) {
+            if (stepCount == steps.length) {
+                steps = Arrays.copyOf(steps, stepCount * 2);
+            }
+            steps[stepCount++] = step;
+            args.addAll(Arrays.asList(stepArgs));
+        }
+
+        VTemplate toTemplate() {
+            return new VTemplate(Arrays.copyOf(steps, stepCount), args.toArray(new String[0]));
+        }
+
+    }
+
+}
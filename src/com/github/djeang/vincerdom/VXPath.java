@@ -1,29 +1,235 @@
 package com.github.djeang.vincerdom;
 
+import org.xml.sax.InputSource;
+
+import javax.xml.namespace.QName;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
- * Utility class to create {@link javax.xml.xpath.XPathExpression} avoiding checked exceptions.
+ * Utility class to create {@link javax.xml.xpath.XPathExpression} avoiding checked exceptions. <p>
+ * Neither {@link XPath} nor {@link XPathExpression} are thread-safe, so each thread compiles expressions with its
+ * own {@link XPath} instance and keeps them in its own LRU cache, keyed by the final expression string.
+ * Evaluation thus never needs locking, as long as compiled expressions are not handed over to other threads. <p>
+ * Expressions may refer to variables as in <code>/project/dependencies/dependency[artifactId=$id]</code>.
+ * Values are bound at evaluation time through {@link VDocument#xPath(XPathExpression, Map)}, so a single
+ * compiled expression serves any value and values never need to be escaped into the expression text.
  */
 public final class VXPath {
 
-    private static final XPath XPATH = XPathFactory.newInstance().newXPath();
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+    private static final ThreadLocal<Compiler> COMPILERS = new ThreadLocal<>();
+
+    private static final ThreadLocal<Map<String, ?>> VARIABLES = new ThreadLocal<>();
+
+    private static final XPathVariableResolver VARIABLE_RESOLVER = VXPath::resolveVariable;
+
+    private static final LongAdder HIT_COUNT = new LongAdder();
+
+    private static final LongAdder MISS_COUNT = new LongAdder();
+
+    private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
+
+    private static volatile int generation;
 
     private VXPath() {
     }
 
     /**
-     * Compiles a string to a {@link XPathExpression}.
+     * Compiles a string to a {@link XPathExpression}. If items are specified, they are substituted in the
+     * expression using {@link String#format(String, Object...)}.
      */
     public static XPathExpression compile(String expression, Object ...items) {
+        String finalExpression = items.length == 0 ? expression : String.format(expression, items);
+        return compiler().compile(finalExpression);
+    }
+
+    /**
+     * Sets the maximum number of compiled expressions each thread keeps in its cache.
+     * A size of 0 disables caching. Existing caches are discarded.
+     */
+    public static synchronized void setCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative : " + size);
+        }
+        cacheSize = size;
+        generation++;
+    }
+
+    /**
+     * Discards the compiled expressions cached by all threads.
+     */
+    public static synchronized void clearCache() {
+        generation++;
+    }
+
+    /**
+     * Returns the number of {@link #compile(String, Object...)} calls served from cache since the last
+     * {@link #resetCacheStats()}.
+     */
+    public static long cacheHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    /**
+     * Returns the number of {@link #compile(String, Object...)} calls that required a compilation since the last
+     * {@link #resetCacheStats()}.
+     */
+    public static long cacheMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * Resets hit and miss counters.
+     */
+    public static void resetCacheStats() {
+        HIT_COUNT.reset();
+        MISS_COUNT.reset();
+    }
+
+    /**
+     * Runs the specified action with the specified variables bound for expressions evaluated by the current thread.
+     */
+    static <T> T withVariables(Map<String, ?> variables, Supplier<T> action) {
+        Map<String, ?> previous = VARIABLES.get();
+        VARIABLES.set(variables);
         try {
-            return XPATH.compile(String.format(expression, items));
-        } catch (XPathExpressionException e) {
-            throw new IllegalStateException("Error when compiling xPath expression " + expression, e);
+            return action.get();
+        } finally {
+            VARIABLES.set(previous);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified expression has been compiled by {@link #compile(String, Object...)},
+     * hence resolves variables through {@link #withVariables(Map, Supplier)}.
+     */
+    static boolean isCompiled(XPathExpression expression) {
+        return expression instanceof CompiledExpression;
+    }
+
+    private static Object resolveVariable(QName name) {
+        Map<String, ?> variables = VARIABLES.get();
+        if (variables == null) {
+            variables = Collections.emptyMap();
+        }
+        Object value = variables.get(name.getLocalPart());
+        if (value == null) {
+            throw new IllegalArgumentException("No value bound to xPath variable $" + name.getLocalPart());
         }
+        if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+
+    private static Compiler compiler() {
+        int currentGeneration = generation;
+        Compiler compiler = COMPILERS.get();
+        if (compiler == null || compiler.generation != currentGeneration) {
+            compiler = new Compiler(currentGeneration, cacheSize);
+            COMPILERS.set(compiler);
+        }
+        return compiler;
+    }
+
+    private static final class Compiler {
+
+        private final int generation;
+
+        private final XPath xPath;
+
+        private final Map<String, XPathExpression> cache;
+
+        private Compiler(int generation, int maxSize) {
+            this.generation = generation;
+            synchronized (XPATH_FACTORY) {  // XPathFactory is not thread-safe
+                this.xPath = XPATH_FACTORY.newXPath();
+            }
+            this.xPath.setXPathVariableResolver(VARIABLE_RESOLVER);
+            this.cache = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        XPathExpression compile(String expression) {
+            XPathExpression result = cache.get(expression);
+            if (result != null) {
+                HIT_COUNT.increment();
+                if (Metrics.enabled()) {
+                    Metrics.current().xPathCacheHit();
+                }
+                return result;
+            }
+            MISS_COUNT.increment();
+            long start = Metrics.enabled() ? System.nanoTime() : 0;
+            try {
+                result = new CompiledExpression(expression, xPath.compile(expression));
+            } catch (XPathExpressionException e) {
+                throw new IllegalStateException("Error when compiling xPath expression " + expression, e);
+            }
+            if (start != 0) {
+                Metrics.current().xPathCompiled(System.nanoTime() - start);
+            }
+            cache.put(expression, result);
+            return result;
+        }
+
+    }
+
+    /*
+     * Expression compiled by this class, telling apart expressions bound to the variable resolver.
+     */
+    private static final class CompiledExpression implements XPathExpression {
+
+        private final String text;
+
+        private final XPathExpression delegate;
+
+        private CompiledExpression(String text, XPathExpression delegate) {
+            this.text = text;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object evaluate(Object item, QName returnType) throws XPathExpressionException {
+            return delegate.evaluate(item, returnType);
+        }
+
+        @Override
+        public String evaluate(Object item) throws XPathExpressionException {
+            return delegate.evaluate(item);
+        }
+
+        @Override
+        public Object evaluate(InputSource source, QName returnType) throws XPathExpressionException {
+            return delegate.evaluate(source, returnType);
+        }
+
+        @Override
+        public String evaluate(InputSource source) throws XPathExpressionException {
+            return delegate.evaluate(source);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
     }
 
 }
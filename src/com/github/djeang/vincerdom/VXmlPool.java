@@ -0,0 +1,144 @@
+package com.github.djeang.vincerdom;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Per-thread pool of {@link DocumentBuilder} and {@link Transformer} used by default in {@link VDocument}. <p>
+ * Looking up and configuring JAXP factories is costly, so each thread keeps its own builder and transformer
+ * and reuses them across calls. Instances are reset before being handed out. <p>
+ * Callers can register their own configured factories. Threads discard their pooled instance the next time
+ * they ask for one after a new factory has been registered. <p>
+ * StAX factories, used for streaming, are thread-safe once configured, so they are shared rather than pooled.
+ *
+ * @author Jerome Angibaud
+ */
+public final class VXmlPool {
+
+    private static volatile DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+    private static volatile TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    private static volatile XMLInputFactory inputFactory = defaultInputFactory();
+
+    private static volatile XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private static final ThreadLocal<Pooled<DocumentBuilder>> DOCUMENT_BUILDERS = new ThreadLocal<>();
+
+    private static final ThreadLocal<Pooled<Transformer>> TRANSFORMERS = new ThreadLocal<>();
+
+    private VXmlPool() {
+    }
+
+    /**
+     * Registers the factory used to create pooled {@link DocumentBuilder}s.
+     */
+    public static void register(DocumentBuilderFactory factory) {
+        documentBuilderFactory = factory;
+    }
+
+    /**
+     * Registers the factory used to create pooled {@link Transformer}s.
+     */
+    public static void register(TransformerFactory factory) {
+        transformerFactory = factory;
+    }
+
+    /**
+     * Registers the factory used to create StAX readers. As for the default {@link DocumentBuilderFactory},
+     * the factory is expected not to be namespace aware.
+     */
+    public static void register(XMLInputFactory factory) {
+        inputFactory = factory;
+    }
+
+    /**
+     * Registers the factory used to create StAX writers.
+     */
+    public static void register(XMLOutputFactory factory) {
+        outputFactory = factory;
+    }
+
+    /**
+     * Returns the shared factory used to create StAX readers.
+     */
+    public static XMLInputFactory inputFactory() {
+        return inputFactory;
+    }
+
+    /**
+     * Returns the shared factory used to create StAX writers.
+     */
+    public static XMLOutputFactory outputFactory() {
+        return outputFactory;
+    }
+
+    /**
+     * Returns the {@link DocumentBuilder} bound to the current thread, freshly reset. <p>
+     * The returned builder must not be shared with other threads.
+     */
+    public static DocumentBuilder documentBuilder() {
+        DocumentBuilderFactory factory = documentBuilderFactory;
+        Pooled<DocumentBuilder> pooled = DOCUMENT_BUILDERS.get();
+        if (pooled != null && pooled.factory == factory) {
+            pooled.instance.reset();
+            return pooled.instance;
+        }
+        final DocumentBuilder builder;
+        try {
+            builder = factory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+        DOCUMENT_BUILDERS.set(new Pooled<>(factory, builder));
+        return builder;
+    }
+
+    /**
+     * Returns the identity {@link Transformer} bound to the current thread, freshly reset. <p>
+     * The returned transformer must not be shared with other threads.
+     */
+    public static Transformer transformer() {
+        TransformerFactory factory = transformerFactory;
+        Pooled<Transformer> pooled = TRANSFORMERS.get();
+        if (pooled != null && pooled.factory == factory) {
+            pooled.instance.reset();
+            return pooled.instance;
+        }
+        final Transformer transformer;
+        try {
+            transformer = factory.newTransformer();
+        } catch (TransformerConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+        TRANSFORMERS.set(new Pooled<>(factory, transformer));
+        return transformer;
+    }
+
+    private static XMLInputFactory defaultInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private static final class Pooled<T> {
+
+        private final Object factory;
+
+        private final T instance;
+
+        private Pooled(Object factory, T instance) {
+            this.factory = factory;
+            this.instance = instance;
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+package com.github.djeang.vincerdom;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the elements of an XML source, found by a light scan that does not decode text nor check
+ * well-formedness. Elements are numbered in document order, so they match the elements of the W3C
+ * document parsed from the same source. <p>
+ * The scan works on any ASCII compatible encoding. It throws {@link IllegalStateException} on markup it
+ * cannot make sense of.
+ */
+final class XmlIndex {
+
+    static final int NONE = -1;
+
+    private final ByteBuffer source;
+
+    private int count;
+
+    private int[] starts;  // offset of '<' of the start tag
+
+    private int[] startTagEnds;  // offset following '>' of the start tag
+
+    private int[] endTagStarts;  // offset of '<' of the end tag, or start tag end if self-closing
+
+    private int[] ends;  // offset following the element
+
+    private int[] nextSiblings;
+
+    private XmlIndex(ByteBuffer source) {
+        this.source = source;
+        int capacity = Math.max(256, source.limit() / 64);  // typical markup density, trimmed once scanned
+        starts = new int[capacity];
+        startTagEnds = new int[capacity];
+        endTagStarts = new int[capacity];
+        ends = new int[capacity];
+        nextSiblings = new int[capacity];
+    }
+
+    /**
+     * Scans the specified source, from position 0 to its limit.
+     */
+    static XmlIndex of(ByteBuffer source) {
+        XmlIndex index = new XmlIndex(source);
+        index.scan();
+        return index;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int start(int element) {
+        return starts[element];
+    }
+
+    int startTagEnd(int element) {
+        return startTagEnds[element];
+    }
+
+    int endTagStart(int element) {
+        return endTagStarts[element];
+    }
+
+    int end(int element) {
+        return ends[element];
+    }
+
+    boolean isSelfClosing(int element) {
+        return startTagEnds[element] == ends[element];
+    }
+
+    int firstChild(int element) {
+        int next = element + 1;  // elements are numbered in document order
+        return next < count && starts[next] < ends[element] ? next : NONE;
+    }
+
+    int nextSibling(int element) {
+        return nextSiblings[element];
+    }
+
+    /**
+     * Returns the offset following the tag name of the specified element.
+     */
+    int nameEnd(int element) {
+        int limit = startTagEnds[element];
+        for (int i = starts[element] + 1; i < limit; i++) {
+            byte b = source.get(i);
+            if (b == '>' || b == '/' || isSpace(b)) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns <code>true</code> if the tag name of the specified element is the specified name.
+     */
+    boolean hasName(int element, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int offset = starts[element] + 1;
+        if (offset + bytes.length >= source.limit()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (source.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        byte next = source.get(offset + bytes.length);
+        return next == '>' || next == '/' || isSpace(next);
+    }
+
+    private void scan() {
+        int[] stack = new int[32];  // open elements
+        int[] lastChildren = new int[32];
+        int depth = 0;
+        lastChildren[0] = NONE;
+        int limit = source.limit();
+        int i = indexOf((byte) '<', 0);
+        while (i >= 0 && i < limit - 1) {
+            byte next = source.get(i + 1);
+            if (next == '!') {
+                if (startsWith("<!--", i)) {
+                    i = after("-->", i + 4);
+                } else if (startsWith("<![CDATA[", i)) {
+                    i = after("]]>", i + 9);
+                } else {
+                    i = afterDeclaration(i);
+                }
+            } else if (next == '?') {
+                i = after("?>", i + 2);
+            } else if (next == '/') {
+                if (depth == 0) {
+                    throw new IllegalStateException("Unexpected end tag at offset " + i);
+                }
+                int element = stack[--depth];
+                endTagStarts[element] = i;
+                i = indexOf((byte) '>', i);
+                if (i < 0) {
+                    throw new IllegalStateException("Unterminated end tag at offset " + endTagStarts[element]);
+                }
+                i++;
+                ends[element] = i;
+            } else {
+                int element = newElement();
+                starts[element] = i;
+                i = afterStartTag(i);
+                startTagEnds[element] = i;
+                if (lastChildren[depth] != NONE) {
+                    nextSiblings[lastChildren[depth]] = element;
+                }
+                lastChildren[depth] = element;
+                if (source.get(i - 2) == '/') {
+                    endTagStarts[element] = i;
+                    ends[element] = i;
+                } else {
+                    if (depth + 1 == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                        lastChildren = Arrays.copyOf(lastChildren, lastChildren.length * 2);
+                    }
+                    stack[depth++] = element;
+                    lastChildren[depth] = NONE;
+                }
+            }
+            i = indexOf((byte) '<', i);
+        }
+        if (depth != 0 || count == 0) {
+            throw new IllegalStateException("Unbalanced or missing elements");
+        }
+        resize(count);  // indexes of large documents may be kept a long time
+    }
+
+    private int newElement() {
+        if (count == starts.length) {
+            resize(count * 2);
+        }
+        int element = count++;
+        nextSiblings[element] = NONE;
+        return element;
+    }
+
+    private void resize(int size) {
+        starts = Arrays.copyOf(starts, size);
+        startTagEnds = Arrays.copyOf(startTagEnds, size);
+        endTagStarts = Arrays.copyOf(endTagStarts, size);
+        ends = Arrays.copyOf(ends, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+    }
+
+    private int afterStartTag(int from) {
+        int limit = source.limit();
+        byte quote = 0;
+        for (int i = from + 1; i < limit; i++) {
+            byte b = source.get(i);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("Unterminated start tag at offset " + from);
+    }
+
+    // Skips declarations such as <!DOCTYPE ...>, including an internal subset between brackets
+    private int afterDeclaration(int from) {
+        int limit = source.limit();
+        byte quote = 0;
+        int brackets = 0;
+        for (int i = from + 2; i < limit; i++) {
+            byte b = source.get(i);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '[') {
+                brackets++;
+            } else if (b == ']') {
+                brackets--;
+            } else if (b == '<' && brackets > 0 && startsWith("<!--", i)) {
+                i = after("-->", i + 4) - 1;
+            } else if (b == '>' && brackets == 0) {
+                return i + 1;
+            }
+        }
+        throw new IllegalStateException("Unterminated declaration at offset " + from);
+    }
+
+    private int after(String token, int from) {
+        int limit = source.limit() - token.length();
+        for (int i = from; i <= limit; i++) {
+            if (startsWith(token, i)) {
+                return i + token.length();
+            }
+        }
+        throw new IllegalStateException("Missing " + token + " after offset " + from);
+    }
+
+    private boolean startsWith(String token, int offset) {
+        if (offset + token.length() > source.limit()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (source.get(offset + i) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte b, int from) {
+        int limit = source.limit();
+        for (int i = from; i < limit; i++) {
+            if (source.get(i) == b) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.github.djeang.vincerdom;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link LazySource} reading an XML file. The file is mapped and scanned by {@link XmlIndex}, element positions
+ * being the ones of the index. The direct content of an element is parsed from a fragment made of the original
+ * bytes, where the content of child elements is skipped. A whole subtree is loaded in a single parse, streamed
+ * from the mapped file.
+ */
+final class XmlLazySource extends LazySource {
+
+    private static final byte[] FRAGMENT_START = "<w>".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] FRAGMENT_END = "</w>".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer buffer;
+
+    private final XmlIndex index;
+
+    private final String encoding;
+
+    private XmlLazySource(ByteBuffer buffer, XmlIndex index, String encoding) {
+        this.buffer = buffer;
+        this.index = index;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Maps and scans the specified file, then builds a document holding only the root element, without its
+     * content. Returns <code>null</code> if the file cannot be loaded lazily : over 2GB, not encoded in an
+     * ASCII compatible encoding, or having a document type declaration which may declare entities.
+     */
+    static Document parse(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (buffer.limit() < 2 || !isAsciiCompatible(buffer)) {
+            return null;
+        }
+        XmlIndex index = XmlIndex.of(buffer);
+        if (contains(buffer, "<!DOCTYPE", index.start(0))) {
+            return null;
+        }
+        Fragment fragment = new Fragment(buffer);
+        fragment.append(0, index.startTagEnd(0));
+        if (!index.isSelfClosing(0)) {
+            fragment.appendEndTag(index, 0);
+        }
+        fragment.append(index.end(0), buffer.limit());
+        Document document = StaxDomBuilder.parse(fragment.toStream());
+        String encoding = (String) document.getUserData(StaxDomBuilder.ENCODING_KEY);
+        XmlLazySource source = new XmlLazySource(buffer, index, encoding == null ? "UTF-8" : encoding);
+        source.attach(document);
+        source.markIfContent(document.getDocumentElement(), 0);
+        return document;
+    }
+
+    @Override
+    void loadSubtree(Element element, int position) {
+        ByteBuffer content = buffer.duplicate();
+        content.limit(index.endTagStart(position)).position(index.startTagEnd(position));
+        InputStream stream = new SequenceInputStream(new ByteArrayInputStream(FRAGMENT_START),
+                new SequenceInputStream(new ByteBufferInputStream(content), new ByteArrayInputStream(FRAGMENT_END)));
+        StaxDomBuilder.parseContent(stream, encoding, element);
+    }
+
+    @Override
+    void loadContent(Element element, int position) {
+        Fragment fragment = new Fragment(buffer);
+        fragment.append(FRAGMENT_START);
+        int offset = index.startTagEnd(position);
+        for (int child = index.firstChild(position); child != XmlIndex.NONE; child = index.nextSibling(child)) {
+            fragment.append(offset, index.startTagEnd(child));
+            if (!index.isSelfClosing(child)) {
+                fragment.appendEndTag(index, child);
+            }
+            offset = index.end(child);
+        }
+        fragment.append(offset, index.endTagStart(position));
+        fragment.append(FRAGMENT_END);
+        StaxDomBuilder.parseContent(fragment.toStream(), encoding, element);
+        int child = index.firstChild(position);
+        for (Element childElement = DomUtils.firstChildElement(element); childElement != null;
+             childElement = DomUtils.nextSiblingElement(childElement)) {
+            if (child == XmlIndex.NONE) {
+                throw new IllegalStateException("Source of element " + element.getTagName() + " has changed.");
+            }
+            markIfContent(childElement, child);
+            child = index.nextSibling(child);
+        }
+    }
+
+    private void markIfContent(Element element, int position) {
+        if (index.endTagStart(position) > index.startTagEnd(position)) {
+            markUnloaded(element, position);
+        }
+    }
+
+    private static boolean isAsciiCompatible(ByteBuffer buffer) {
+        int first = buffer.get(0) & 0xFF;
+        return first != 0xFE && first != 0xFF && first != 0 && buffer.get(1) != 0;
+    }
+
+    private static boolean contains(ByteBuffer buffer, String token, int end) {
+        for (int i = 0; i + token.length() <= end; i++) {
+            int j = 0;
+            while (j < token.length() && buffer.get(i + j) == token.charAt(j)) {
+                j++;
+            }
+            if (j == token.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Bytes of the source, assembled from ranges.
+     */
+    private static final class Fragment {
+
+        private final ByteBuffer source;
+
+        private byte[] bytes = new byte[1024];
+
+        private int length;
+
+        Fragment(ByteBuffer source) {
+            this.source = source.duplicate();
+        }
+
+        void append(int start, int end) {
+            ensureCapacity(end - start);
+            source.limit(end).position(start);
+            source.get(bytes, length, end - start);
+            length += end - start;
+        }
+
+        void append(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, length, data.length);
+            length += data.length;
+        }
+
+        // End tag matching the start tag of the specified element, which content is skipped
+        void appendEndTag(XmlIndex index, int element) {
+            ensureCapacity(3);
+            bytes[length++] = '<';
+            bytes[length++] = '/';
+            append(index.start(element) + 1, index.nameEnd(element));
+            ensureCapacity(1);
+            bytes[length++] = '>';
+        }
+
+        InputStream toStream() {
+            return new ByteArrayInputStream(bytes, 0, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+class DomPrinterTest {
+
+    @Test
+    void testPrint_escapingAndIndentation_sameAsTransformer() {
+        VDocument doc = VDocument.of("a").root()
+                .attr("x", "1 & <2> \"q\"\n")
+                .add("b").text("t < u & v").__.__;
+        Document w3cDocument = doc.getW3cDocument();
+        Element root = w3cDocument.getDocumentElement();
+        root.appendChild(w3cDocument.createComment(" c "));
+        root.appendChild(w3cDocument.createElement("c"));
+        root.appendChild(w3cDocument.createElement("d")).appendChild(w3cDocument.createCDATASection("x]]>y"));
+        Element preserved = w3cDocument.createElement("p");
+        preserved.setAttribute("xml:space", "preserve");
+        preserved.appendChild(w3cDocument.createTextNode("  keep "));
+        preserved.appendChild(w3cDocument.createElement("e"));
+        root.appendChild(preserved);
+        String expected = lines(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>",
+                "<a x=\"1 &amp; &lt;2&gt; &quot;q&quot;&#10;\">",
+                "    <b>t &lt; u &amp; v</b>",
+                "    <!-- c -->",
+                "    <c/>",
+                "    <d><![CDATA[x]]]]><![CDATA[>y]]></d>",
+                "    <p xml:space=\"preserve\">  keep <e/></p>",
+                "</a>");
+        Assertions.assertEquals(expected, doc.printAsString());
+    }
+
+    @Test
+    void testPrint_namespaceAlreadyInScope_notRedeclared() {
+        VDocument doc = VDocument.parse(
+                "<r xmlns:p=\"urn:p\"><p:a xmlns:p=\"urn:p\">1</p:a><b xmlns:p=\"urn:q\"/></r>");
+        String expected = lines(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>",
+                "<r xmlns:p=\"urn:p\">",
+                "    <p:a>1</p:a>",
+                "    <b xmlns:p=\"urn:q\"/>",
+                "</r>");
+        Assertions.assertEquals(expected, doc.printAsString());
+    }
+
+    @Test
+    void testPrint_outputStream_utf8() {
+        VDocument doc = VDocument.of("a").root().text("\u00e9\u20ac").__;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.print(out);
+        Assertions.assertEquals(doc.printAsString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static String lines(String... lines) {
+        String separator = System.lineSeparator();
+        return String.join(separator, lines) + separator;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class VBatchTest {
+
+    @Test
+    void testRun_oneMalformedFile_othersEditedAndFailureReported(@TempDir Path dir) throws Exception {
+        List<Path> files = createFiles(dir, 20);
+        Files.write(files.get(7), "<a><b></a>".getBytes(StandardCharsets.UTF_8));
+        VBatch.Report report = VBatch.of().run(files, doc -> doc.root().add("edited"));
+        Assertions.assertEquals(20, report.fileCount());
+        Assertions.assertEquals(19, report.successCount());
+        Assertions.assertEquals(1, report.failures().size());
+        Assertions.assertTrue(report.failures().containsKey(files.get(7)));
+        Assertions.assertTrue(report.byteCount() > 0);
+        for (Path file : files) {
+            if (!file.equals(files.get(7))) {
+                Assertions.assertEquals(1, VDocument.parse(file).root().children("edited").size());
+            }
+        }
+    }
+
+    @Test
+    void testForEach_editorThrowsError_reportedAsFailure(@TempDir Path dir) throws Exception {
+        List<Path> files = createFiles(dir, 4);
+        Files.write(files.get(3), "<a><b></a>".getBytes(StandardCharsets.UTF_8));
+        long validSize = 0;
+        for (int i = 0; i < 3; i++) {
+            validSize += Files.size(files.get(i));
+        }
+        VBatch.Report report = VBatch.of().forEach(files, doc -> {
+            if ("1".equals(doc.root().attr("index"))) {
+                throw new AssertionError("editor bug");
+            }
+        });
+        Assertions.assertEquals(2, report.successCount());
+        Assertions.assertTrue(report.failures().get(files.get(1)) instanceof AssertionError);
+        Assertions.assertTrue(report.failures().containsKey(files.get(3)));
+        Assertions.assertEquals(validSize, report.byteCount());  // the malformed file is not counted
+    }
+
+    @Test
+    void testForEach_defaultExecutor_dedicatedBoundedThreads(@TempDir Path dir) throws Exception {
+        List<Path> files = createFiles(dir, 30);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        VBatch.Report report = VBatch.of().maxOpenFiles(3).forEach(files, doc -> threads.add(Thread.currentThread()));
+        Assertions.assertEquals(30, report.successCount());
+        Assertions.assertTrue(threads.size() <= 3, threads.size() + " threads");
+        threads.forEach(thread -> Assertions.assertFalse(thread instanceof ForkJoinWorkerThread, thread.getName()));
+
+        Set<Thread> commonPoolThreads = ConcurrentHashMap.newKeySet();
+        report = VBatch.of().executor(ForkJoinPool.commonPool())
+                .forEach(files, doc -> commonPoolThreads.add(Thread.currentThread()));
+        Assertions.assertEquals(30, report.successCount());
+        Assertions.assertFalse(commonPoolThreads.isEmpty());
+    }
+
+    @Test
+    void testForEach_filesLeftUnchanged(@TempDir Path dir) throws Exception {
+        List<Path> files = createFiles(dir, 5);
+        AtomicInteger count = new AtomicInteger();
+        VBatch.Report report = VBatch.of().forEach(files, doc -> {
+            doc.root().add("edited");
+            count.incrementAndGet();
+        });
+        Assertions.assertEquals(5, report.successCount());
+        Assertions.assertEquals(5, count.get());
+        Assertions.assertEquals(0, VDocument.parse(files.get(0)).root().children("edited").size());
+    }
+
+    @Test
+    void testRun_maxOpenFiles_concurrencyBounded(@TempDir Path dir) throws Exception {
+        List<Path> files = createFiles(dir, 30);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            VBatch.of().executor(executor).maxOpenFiles(2).atomicSave(true).run(files, doc -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertTrue(maxRunning.get() <= 2);
+        Assertions.assertEquals(30, Files.list(dir).count());
+    }
+
+    private static List<Path> createFiles(Path dir, int count) {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path file = dir.resolve("file" + i + ".xml");
+            VDocument.of("root").root().attr("index", Integer.toString(i)).__.save(file);
+            files.add(file);
+        }
+        return files;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+class VCompactDocumentTest {
+
+    @Test
+    void testNavigation_samplePom_sameAsVDocument() {
+        VCompactDocument compact = VCompactDocument.parse(VCompactDocumentTest.class.getResourceAsStream("sample-pom.xml"));
+        VDocument doc = VDocument.parse(VCompactDocumentTest.class.getResourceAsStream("sample-pom.xml"));
+        VCompactElement root = compact.root();
+        Assertions.assertEquals(doc.root().tagName(), root.tagName());
+        Assertions.assertEquals(doc.root().attr("xmlns"), root.attr("xmlns"));
+        Assertions.assertEquals(doc.root().text(), root.text());
+        Assertions.assertEquals(doc.root().get("build/plugins/plugin/groupId").text(),
+                root.get("build/plugins/plugin/groupId").text());
+        Assertions.assertEquals(doc.root().children().stream().map(VElement::tagName).collect(Collectors.toList()),
+                root.children().stream().map(VCompactElement::tagName).collect(Collectors.toList()));
+        Assertions.assertEquals(doc.xPath("/project/dependencies/dependency/artifactId").stream()
+                        .map(VElement::text).collect(Collectors.toList()),
+                compact.xPath("/project/dependencies/dependency/artifactId").stream()
+                        .map(VCompactElement::text).collect(Collectors.toList()));
+        Assertions.assertEquals(compact.xPath("/project/build/plugins/plugin"), compact.xPath("build/plugins/plugin"));
+    }
+
+    @Test
+    void testNavigation_missingElements_noNullCheckNeeded() {
+        VCompactElement root = VCompactDocument.parse("<a x='1'><b>one<c>two</c></b><b>three</b></a>").root();
+        Assertions.assertEquals("1", root.attr("x"));
+        Assertions.assertEquals("", root.attr("y"));
+        Assertions.assertEquals("onetwo", root.child("b").text());
+        Assertions.assertEquals("three", root.child("b", b -> b.children("c").isEmpty()).text());
+        Assertions.assertEquals(2, root.children("b").size());
+        Assertions.assertFalse(root.get("b/d/e").exist());
+        Assertions.assertNull(root.get("b/d/e").text());
+        Assertions.assertNull(root.child("unknown"));
+        Assertions.assertEquals(root, root.get("b/c").parent().parent());
+        Assertions.assertTrue(VCompactDocument.parse("<a/>").xPath("/b").isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> root.document().xPath("//b"));
+    }
+
+    @Test
+    void testText_cdataAndEntities_merged() {
+        VCompactElement root = VCompactDocument.parse("<a>x &amp; <![CDATA[<y>]]> z<!-- c --></a>").root();
+        Assertions.assertEquals("x & <y> z", root.text());
+    }
+
+    @Test
+    void testNavigation_sharedAcrossThreads() {
+        VCompactDocument compact = VCompactDocument.parse(VCompactDocumentTest.class.getResourceAsStream("sample-pom.xml"));
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> compact.root().get("build/plugins/plugin/artifactId").text()));
+        }
+        for (CompletableFuture<String> future : futures) {
+            Assertions.assertEquals("maven-compiler-plugin", future.join());
+        }
+    }
+
+}
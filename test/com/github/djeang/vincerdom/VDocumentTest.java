@@ -0,0 +1,329 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class VDocumentTest {
+
+    @Test
+    void testPrint_channelBufferBoundaries_sameAsString() {
+        VElement<VDocument> root = VDocument.of("root").root();
+        for (int i = 0; i < 5000; i++) {
+            root.add("item").attr("id", Integer.toString(i)).text("\u00e9\u20ac\uD83D\uDE00 " + i);
+        }
+        root.getW3cElement().appendChild(root.__.getW3cDocument().createComment("\uD83D\uDE00"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        root.__.print(Channels.newChannel(out));
+        Assertions.assertEquals(root.__.printAsString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSave_existingFile_replaced(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("doc.xml");
+        Files.write(file, new byte[100_000]);
+        VDocument doc = VDocument.of("a").root().add("b").text("c").__.__;
+        doc.save(file);
+        Assertions.assertEquals(doc.printAsString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSaveAtomically_existingFile_replacedWithoutTempLeft(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("doc.xml");
+        VDocument.of("old").save(file);
+        VDocument parsed = VDocument.parse(file);
+        parsed.root().add("child");
+        parsed.saveAtomically();
+        Assertions.assertEquals(parsed.printAsString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, Files.list(dir).count());
+    }
+
+    @Test
+    void testSave_trackedSymlinkedSource_permissionsAndLinkKept(@TempDir Path dir) throws Exception {
+        Assumptions.assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null);
+        Path file = dir.resolve("doc.xml");
+        Files.write(file, "<a><b>1</b></a>".getBytes(StandardCharsets.UTF_8));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file, permissions);
+        Path link = Files.createSymbolicLink(dir.resolve("link.xml"), file.getFileName());
+        VDocument doc = VDocument.parseLazy(link);
+        doc.root().get("b").text("2");
+        doc.save();
+        Assertions.assertTrue(Files.isSymbolicLink(link));
+        Assertions.assertEquals("<a><b>2</b></a>", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assertions.assertEquals(permissions, Files.getPosixFilePermissions(file));
+        Assertions.assertEquals(2, Files.list(dir).count());
+    }
+
+    @Test
+    void testParseMapped_samplePom_sameAsParse(@TempDir Path dir) throws Exception {
+        Path pom = dir.resolve("pom.xml");
+        Files.copy(VDocumentTest.class.getResourceAsStream("sample-pom.xml"), pom);
+        VDocument mapped = VDocument.parseMapped(pom);
+        Assertions.assertEquals(VDocument.parse(pom).printAsString(), mapped.printAsString());
+        mapped.root().add("extra");
+        mapped.save(dir.resolve("saved.xml"));  // the source is still mapped, which prevents overwriting on Windows
+        Assertions.assertEquals(1, VDocument.parseMapped(dir.resolve("saved.xml")).root().children("extra").size());
+    }
+
+    @Test
+    void testSaveAtomically_notFromFile_throwsIllegalState() {
+        Assertions.assertThrows(IllegalStateException.class, () -> VDocument.of("a").saveAtomically());
+    }
+
+    @Test
+    void testCopy_samplePom_sameContentAndIndependent() {
+        VDocument doc = DocSamples.pomSample();
+        VDocument copy = doc.copy();
+        Assertions.assertEquals(doc.printAsString(), copy.printAsString());
+        copy.root().get("version").text("changed");
+        Assertions.assertNotEquals("changed", doc.root().get("version").text());
+    }
+
+    @Test
+    void testTemplate_documentAndElement_sameContentAsSource() {
+        VDocument doc = VDocument.parse("<?xml version=\"1.0\"?><!-- head --><a x=\"1\"><b>t<![CDATA[<c>]]></b>"
+                + "<?pi data?><!-- c --></a>");
+        VTemplate template = VTemplate.of(doc);
+        Assertions.assertEquals(doc.printAsString(), template.newDocument().printAsString());
+        doc.root().attr("x", "2");
+        Assertions.assertEquals("1", template.newDocument().root().attr("x"));
+
+        VTemplate elementTemplate = VTemplate.of(doc.root().get("b"));
+        VElement<VDocument> root = VDocument.of("root").root().indexChildren();
+        root.add(elementTemplate).attr("index", "0").__.add(elementTemplate);
+        Assertions.assertEquals(2, root.children("b").size());
+        Assertions.assertEquals("t<c>", root.child("b").text());
+        Assertions.assertEquals("b", elementTemplate.newDocument().root().tagName());
+    }
+
+    @Test
+    void testCopyAndTemplate_documentType_kept() throws Exception {
+        Document w3cDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        w3cDocument.appendChild(w3cDocument.getImplementation().createDocumentType("a", "-//V//A", "a.dtd"));
+        w3cDocument.appendChild(w3cDocument.createElement("a")).appendChild(w3cDocument.createElement("b"));
+        VDocument doc = VDocument.of(w3cDocument);
+        for (VDocument copy : Arrays.asList(doc.copy(), VTemplate.of(doc).newDocument())) {
+            DocumentType documentType = copy.getW3cDocument().getDoctype();
+            Assertions.assertEquals("a", documentType.getName());
+            Assertions.assertEquals("-//V//A", documentType.getPublicId());
+            Assertions.assertEquals("a.dtd", documentType.getSystemId());
+            Assertions.assertEquals("b", copy.root().child("b").tagName());
+        }
+        VElement<VDocument> root = VDocument.of("root").root();
+        root.add(VTemplate.of(doc));
+        Assertions.assertEquals("a", root.child("a").tagName());
+    }
+
+    @Test
+    void testFreeze_concurrentReads_sameResults() throws Exception {
+        VDocument doc = VDocument.parse(VDocumentTest.class.getResourceAsStream("sample-pom.xml"))
+                .indexChildren().freeze();
+        String expected = describe(doc);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> describe(doc)));
+            }
+            for (Future<String> future : futures) {
+                Assertions.assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFreeze_writes_rejected() {
+        VDocument doc = DocSamples.pomSample().freeze();
+        Assertions.assertTrue(doc.isFrozen());
+        Assertions.assertThrows(IllegalStateException.class, () -> doc.root().add("a"));
+        Assertions.assertThrows(IllegalStateException.class, () -> doc.root().get("version").text("1"));
+        Assertions.assertFalse(doc.root().get("missing/child").exist());
+        Assertions.assertFalse(doc.root().get("missing").get("child").get("leaf").exist());
+        Assertions.assertThrows(IllegalStateException.class, () -> doc.root().get("a/b").make());
+        VElement<Void> rewrapped = VElement.of(doc.getW3cDocument().getDocumentElement());
+        Assertions.assertThrows(IllegalStateException.class, () -> rewrapped.attr("a", "b"));
+        Assertions.assertFalse(rewrapped.get("missing/child").exist());
+        Assertions.assertFalse(doc.root().get("missing").exist());
+        Assertions.assertThrows(IllegalStateException.class, doc::indexChildren);
+        Assertions.assertFalse(doc.copy().isFrozen());
+    }
+
+    @Test
+    void testSave_trackedChanges_onlyModifiedElementsRewritten(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("edited.xml");
+        Files.write(file, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- head -->\n<project  a = 'x'>\n"
+                + "  <name>old</name>   <!-- keep -->\n  <deps>\n     <dep id='1'/>\n     <dep id='2' ></dep>\n"
+                + "  </deps>\n\t<empty/>\n  <other  b='&#65;'>\u00e9</other>\n</project>\n<!-- tail -->\n")
+                .getBytes(StandardCharsets.UTF_8));
+        VDocument doc = VDocument.parse(file).trackChanges();
+        VElement<VDocument> root = doc.root();
+        root.get("name").text("new");
+        root.get("deps").child("dep", dep -> dep.attr("id").equals("1")).remove();
+        root.get("deps").child("dep").attr("id", "3");
+        root.get("empty").add("x");
+        doc.save();
+        String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- head -->\n<project  a = 'x'>\n"
+                + "  <name>new</name>   <!-- keep -->\n  <deps>\n     \n     <dep id=\"3\"></dep>\n"
+                + "  </deps>\n\t<empty><x/></empty>\n  <other  b='&#65;'>\u00e9</other>\n</project>\n<!-- tail -->\n";
+        Assertions.assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        root.get("other").attr("b", "B");
+        doc.save();
+        Assertions.assertEquals(expected.replace("<other  b='&#65;'>", "<other b=\"B\">"),
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSave_trackedSourceChangedElsewhere_wholeDocumentPrinted(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("edited.xml");
+        Files.write(file, "<a>  <b/>  </a>".getBytes(StandardCharsets.UTF_8));
+        VDocument doc = VDocument.parse(file).trackChanges();
+        doc.root().add("c");
+        Files.write(file, "<z><y/></z>".getBytes(StandardCharsets.UTF_8));
+        Path copy = dir.resolve("copy.xml");
+        doc.save(copy);
+        Assertions.assertEquals(doc.printAsString(), new String(Files.readAllBytes(copy), StandardCharsets.UTF_8));
+        Assertions.assertThrows(IllegalStateException.class, () -> VDocument.of("a").trackChanges());
+    }
+
+    @Test
+    void testSave_trackedWithOpenOptions_optionsHonored(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("edited.xml");
+        Files.write(file, "<a>  <b/>  </a>".getBytes(StandardCharsets.UTF_8));
+        VDocument doc = VDocument.parse(file).trackChanges();
+        doc.root().add("c");
+        Assertions.assertThrows(UncheckedIOException.class, () -> doc.save(file, StandardOpenOption.CREATE_NEW));
+        Assertions.assertEquals("<a>  <b/>  </a>", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Path other = dir.resolve("other.xml");
+        Files.write(other, "<z/>".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(UncheckedIOException.class, () -> doc.save(other, StandardOpenOption.CREATE_NEW));
+        doc.save(other, StandardOpenOption.APPEND);
+        Assertions.assertEquals("<z/>" + doc.printAsString(),
+                new String(Files.readAllBytes(other), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParse_staxEngine_sameAsDomBuilder(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("sample.xml");
+        String xml = "<?xml version=\"1.0\" standalone=\"yes\"?>\n<!-- head --><?pi data?>\n"
+                + "<a x=\"1\" y='&lt;2&gt;'>\n  <b>one &amp; two</b><c/>\n  <!-- c --><d>\u00e9<e/>text<![CDATA[<x>]]></d>\n</a>\n";
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(VDocument.parse(file).printAsString(),
+                VDocument.parse(file, VParseEngine.STAX).printAsString());
+        Files.copy(VDocumentTest.class.getResourceAsStream("sample-pom.xml"), dir.resolve("pom.xml"));
+        Assertions.assertEquals(VDocument.parse(dir.resolve("pom.xml")).printAsString(),
+                VDocument.parse(dir.resolve("pom.xml"), VParseEngine.STAX).printAsString());
+        VDocument cdata = VDocument.parse(new ByteArrayInputStream("<a><![CDATA[<b>]]> c</a>"
+                .getBytes(StandardCharsets.UTF_8)), VParseEngine.STAX);
+        Assertions.assertEquals("<b> c", cdata.root().text());
+
+        VDocument tracked = VDocument.parse(file, VParseEngine.STAX).trackChanges();
+        tracked.root().get("c").attr("z", "3");
+        tracked.save();
+        Assertions.assertEquals(xml.replace("<c/>", "<c z=\"3\"/>"),
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParse_staxEngineWithDocumentType_attributeDefaultsKept() {
+        String padding = new String(new char[20_000]).replace('\0', 'p');  // beyond the stream buffer
+        for (String xml : Arrays.asList("<!DOCTYPE a [<!ATTLIST a d CDATA 'def'>]><a/>",
+                "<!DOCTYPE a [<!-- " + padding + " --><!ATTLIST b e CDATA 'x'>]><a><b/><b e='y'/></a>")) {
+            VDocument stax = VDocument.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                    VParseEngine.STAX);
+            VDocument dom = VDocument.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            Assertions.assertEquals(dom.printAsString(), stax.printAsString());
+            Assertions.assertNotNull(stax.getW3cDocument().getDoctype());
+        }
+    }
+
+    @Test
+    void testParseLazy_navigatedAndSaved_sameAsParse(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("sample.xml");
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<!-- head -->\n"
+                + "<a x=\"1\" y='&lt;2&gt;'>\n  <b>one &amp; two</b><c/><c></c>\n  <!-- c -->"
+                + "<d k='>'>\u00e9<e><f>1</f></e>text<![CDATA[<x>]]></d>\n</a>\n";
+        Files.write(file, xml.getBytes(StandardCharsets.ISO_8859_1));
+        Assertions.assertEquals(VDocument.parse(file).printAsString(), VDocument.parseLazy(file).printAsString());
+        Files.copy(VDocumentTest.class.getResourceAsStream("sample-pom.xml"), dir.resolve("pom.xml"));
+        Assertions.assertEquals(VDocument.parse(dir.resolve("pom.xml")).printAsString(),
+                VDocument.parseLazy(dir.resolve("pom.xml")).printAsString());
+
+        VDocument lazy = VDocument.parseLazy(file);
+        Assertions.assertEquals(2, lazy.root().children("c").size());
+        Assertions.assertEquals("\u00e9" + "1text<x>", lazy.root().get("d").text());
+        Assertions.assertEquals("1", lazy.xPath(VPath.compile("/a/d/e/f")).get(0).text());
+        String utf8Xml = xml.replace("ISO-8859-1", "UTF-8");
+        Files.write(file, utf8Xml.getBytes(StandardCharsets.UTF_8));
+        lazy = VDocument.parseLazy(file);
+        lazy.root().get("d").get("e").attr("z", "3");
+        lazy.save();
+        Assertions.assertEquals(utf8Xml.replace("<e>", "<e z=\"3\">"),
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testParseAsyncAndSaveAsync_executor_runOnExecutorThreads(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("pom.xml");
+        Files.copy(VDocumentTest.class.getResourceAsStream("sample-pom.xml"), file);
+        VDocument doc = VDocument.parseAsync(file).get();
+        Assertions.assertEquals("vincer-dom", doc.root().get("artifactId").text());
+        doc.root().get("artifactId").text("async");
+        doc.saveAsync(dir.resolve("saved.xml")).get();
+        Assertions.assertEquals(doc.printAsString(),
+                new String(Files.readAllBytes(dir.resolve("saved.xml")), StandardCharsets.UTF_8));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "custom"));
+        try {
+            List<String> threadNames = new ArrayList<>();
+            Executor recording = command -> executor.execute(() -> {
+                threadNames.add(Thread.currentThread().getName());
+                command.run();
+            });
+            VDocument.parseAsync(file, recording).thenCompose(parsed -> parsed.saveAsync(file, recording)).get();
+            Assertions.assertEquals(Arrays.asList("custom", "custom"), threadNames);
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> VDocument.parseAsync(dir.resolve("missing.xml"), executor).get());
+            Assertions.assertTrue(exception.getCause() instanceof UncheckedIOException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String describe(VDocument doc) {
+        StringBuilder sb = new StringBuilder(doc.root().get("build/plugins/plugin/artifactId").text());
+        for (VElement<Void> dependency : doc.root().get("dependencies").children("dependency")) {
+            sb.append(dependency.child("groupId").text()).append(dependency.get("version").text());
+        }
+        doc.xPath("//artifactId").forEach(artifactId -> sb.append(artifactId.text()));
+        return sb.append(doc.root().attr("xmlns")).toString();
+    }
+
+}
@@ -3,7 +3,13 @@ package com.github.djeang.vincerdom;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
 
 class VElementTest {
 
@@ -45,6 +51,20 @@ class VElementTest {
         Assertions.assertEquals(parentGroupId, parentGroupId2);
     }
 
+    @Test
+    void testAdd_computedNames_sharedWithParsedNames() {
+        VDocument parsed = VDocument.parse("<project><dependency scope='test'/></project>");
+        VElement<?> parsedDependency = parsed.root().get("dependency");
+        VDocument built = VDocument.of(new StringBuilder("proj").append("ect").toString());
+        VElement<?> dependency = built.root().add(new StringBuilder("depend").append("ency").toString())
+                .attr(new StringBuilder("sco").append("pe").toString(), "test");
+        Assertions.assertSame(parsed.root().tagName(), built.root().tagName());
+        Assertions.assertSame(parsedDependency.tagName(), dependency.tagName());
+        Assertions.assertSame(parsedDependency.getW3cElement().getAttributeNode("scope").getName(),
+                dependency.getW3cElement().getAttributeNode("scope").getName());
+        Assertions.assertEquals(1, built.root().children(new String("dependency")).size());
+    }
+
     @Test
     void testChild() {
         String groupId = DocSamples.pomSample().root()
@@ -52,6 +72,31 @@ class VElementTest {
         Assertions.assertEquals("org.github.djeang", groupId);
     }
 
+    @Test
+    void testChild_withPredicate_firstMatch() {
+        VElement<Void> dependency = DocSamples.pomSample().root().get("dependencies")
+                .child("dependency", el -> "slf4j-simple".equals(el.get("artifactId").text()));
+        Assertions.assertEquals("org.slf4j", dependency.get("groupId").text());
+        Assertions.assertNull(DocSamples.pomSample().root().child("unknown"));
+    }
+
+    @Test
+    void testChildren_randomAccess() {
+        List<VElement<Void>> dependencies = DocSamples.pomSample().root().get("dependencies").children("dependency");
+        Assertions.assertTrue(dependencies instanceof RandomAccess);
+        Assertions.assertEquals("hibernate-core", dependencies.get(1).get("artifactId").text());
+    }
+
+    @Test
+    void testForEachChild_visitsNamedChildrenOnly() {
+        List<String> artifactIds = new ArrayList<>();
+        DocSamples.pomSample().root().get("dependencies").forEachChild("dependency",
+                el -> artifactIds.add(el.getElementsByTagName("artifactId").item(0).getTextContent()));
+        Assertions.assertEquals(DocSamples.pomSample().root().get("dependencies").children("dependency").size(),
+                artifactIds.size());
+        Assertions.assertEquals("hibernate-core", artifactIds.get(1));
+    }
+
     @Test
     void testAdd_externalElement() {
         VElement firstPlugin = DocSamples.pomSample().root().get("build/plugins/plugin");
@@ -63,7 +108,115 @@ class VElementTest {
 
     }
 
+    @Test
+    void testIndexChildren_mutationsThroughApi_lookupsUpToDate() {
+        VElement<VDocument> root = VDocument.of("root").root().indexChildren();
+        root.add("a").attr("id", "1");
+        Assertions.assertEquals("1", root.get("a").attr("id"));
+        root.add("b");
+        root.get("b").addSibling("a").attr("id", "0");
+        Assertions.assertEquals("1", root.child("a").attr("id"));
+        Assertions.assertEquals(2, root.children("a").size());
+        root.child("a").remove();
+        Assertions.assertEquals("0", root.get("a").attr("id"));
+        root.get("c/d").make();
+        Assertions.assertTrue(root.get("c").exist());
+        root.text("");
+        Assertions.assertFalse(root.get("a").exist());
+    }
+
+    @Test
+    void testIndexChildren_wholeDocument_w3cEditsSeenAfterReindex() {
+        VDocument doc = DocSamples.pomSample().indexChildren();
+        VElement<?> dependencies = doc.root().get("dependencies");
+        int count = dependencies.children("dependency").size();
+        VElement<?> moved = dependencies.get("dependency");
+        doc.root().get("dependencyManagement").make().add(moved);
+        Assertions.assertEquals(count - 1, dependencies.children("dependency").size());
+        dependencies.getW3cElement().appendChild(doc.getW3cDocument().createElement("dependency"));
+        Assertions.assertEquals(count - 1, dependencies.children("dependency").size());
+        doc.indexChildren();
+        Assertions.assertEquals(count, dependencies.children("dependency").size());
+    }
+
+    @Test
+    void testNavigation_sameElementSameParent_sameWrapper() {
+        VDocument doc = DocSamples.pomSample();
+        VElement<?> dependencies = doc.root().get("dependencies");
+        Assertions.assertSame(doc.root(), doc.root());
+        Assertions.assertSame(dependencies, doc.root().get("dependencies"));
+        Assertions.assertSame(dependencies.get("dependency"), dependencies.child("dependency"));
+        Assertions.assertSame(dependencies.children("dependency").get(1), dependencies.children().get(1));
+        Assertions.assertSame(doc.xPath("/project").get(0), doc.root());
+        VElement<?> added = dependencies.add("dependency");
+        List<VElement<Void>> children = dependencies.children("dependency");
+        Assertions.assertSame(added, children.get(children.size() - 1));
+    }
 
+    @Test
+    void testRemoveAndMove_cachedWrappers_evicted() {
+        VDocument doc = DocSamples.pomSample();
+        VElement<VDocument> root = doc.root();
+        VElement<?> dependencies = root.get("dependencies");
+        dependencies.children("dependency").forEach(VElement::tagName);
+        int dependencyCount = dependencies.children("dependency").size();
+        Assertions.assertEquals(dependencyCount, dependencies.cachedWrapperCount());
+        int documentCount = doc.cachedWrapperCount();
+        List<VElement<Void>> found = doc.xPath("/project/dependencies/dependency");
+        Assertions.assertEquals(documentCount + dependencyCount, doc.cachedWrapperCount());
+        found.forEach(VElement::remove);
+        Assertions.assertEquals(documentCount, doc.cachedWrapperCount());
+
+        List<VElement<?>> added = new ArrayList<>();
+        while (dependencies.cachedWrapperCount() > added.size()) {  // removed through others, swept on growth
+            added.add(dependencies.add("added"));
+        }
+        Assertions.assertEquals(added.size(), dependencies.cachedWrapperCount());
+        root.get("build").add(added.get(0));
+        Assertions.assertEquals(added.size() - 1, dependencies.cachedWrapperCount());
+    }
 
+    @Test
+    void testChildren_laterEdits_listUnchanged() {
+        VElement<?> dependencies = DocSamples.pomSample().root().get("dependencies");
+        List<VElement<Void>> children = dependencies.children("dependency");
+        int count = children.size();
+        dependencies.add("dependency");
+        Assertions.assertEquals(count, children.size());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> children.remove(0));
+    }
+
+    @Test
+    void testRemoveChildren_withPredicate_onlyMatchingRemoved() {
+        VElement<VDocument> root = VDocument.of("root").root().indexChildren();
+        for (int i = 0; i < 10; i++) {
+            root.add("item").attr("index", Integer.toString(i));
+        }
+        root.add("other");
+        root.removeChildren("item", item -> Integer.parseInt(item.attr("index")) % 2 == 0);
+        Assertions.assertEquals(5, root.children("item").size());
+        Assertions.assertEquals("1", root.child("item").attr("index"));
+        root.removeChildren("item");
+        Assertions.assertEquals(1, root.children().size());
+    }
+
+    @Test
+    void testAddAll_sameAndOtherDocument_appendedInOrder() {
+        VElement<VDocument> root = VDocument.of("root").root().indexChildren();
+        root.add("a");
+        VElement<VDocument> other = VDocument.of("other").root();
+        other.add("b");
+        List<VElement<Void>> sources = new ArrayList<>(root.children("a"));
+        sources.addAll(other.children("b"));
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("x", "1");
+        attributes.put("y", "2");
+        root.add("target").attrs(attributes).addAll(sources);
+        Assertions.assertEquals("2", root.get("target").attr("y"));
+        Assertions.assertEquals(Arrays.asList("a", "b"), root.get("target").children().stream()
+                .map(VElement::tagName).collect(Collectors.toList()));
+        Assertions.assertNull(root.child("a"));
+        Assertions.assertEquals(1, other.children("b").size());
+    }
 
 }
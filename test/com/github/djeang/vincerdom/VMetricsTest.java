@@ -0,0 +1,60 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+class VMetricsTest {
+
+    @AfterEach
+    void uninstall() {
+        VMetrics.install(VMetrics.NONE);
+    }
+
+    @Test
+    void testInstall_histogram_recordsOperations() {
+        VHistogramMetrics metrics = VHistogramMetrics.of();
+        VMetrics.install(metrics);
+        Assertions.assertSame(metrics, VMetrics.installed());
+        VDocument doc = VDocument.parse("<a><b>text</b><!-- c --></a>");
+        doc.root().get("x").make();
+        doc.print(new ByteArrayOutputStream());
+        String expression = "/a/b[" + System.nanoTime() + " > 0]";  // not in cache yet
+        doc.xPath(expression);
+        doc.xPath(expression);
+
+        Assertions.assertEquals(1, metrics.parseNanos().count());
+        Assertions.assertEquals(28, metrics.parseBytes().sum());
+        Assertions.assertEquals(5, metrics.parseNodes().sum());
+        Assertions.assertEquals(1, metrics.proxyMaterializations());
+        Assertions.assertEquals(1, metrics.printBytes().count());
+        Assertions.assertTrue(metrics.printBytes().sum() > 28);
+        Assertions.assertEquals(1, metrics.xPathCompileNanos().count());
+        Assertions.assertEquals(1, metrics.xPathCacheHits());
+        Assertions.assertEquals(2, metrics.xPathEvaluateNanos().count());
+
+        VMetrics.install(VMetrics.NONE);
+        VDocument.parse("<a/>");
+        Assertions.assertEquals(1, metrics.parseNanos().count());
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.xPathEvaluateNanos().count());
+    }
+
+    @Test
+    void testPercentile_recordedValues_boundedWithinFactorOfTwo() {
+        VHistogramMetrics metrics = VHistogramMetrics.of();
+        for (int i = 1; i <= 100; i++) {
+            metrics.xPathCompiled(i * 1000L);
+        }
+        VHistogramMetrics.Histogram histogram = metrics.xPathCompileNanos();
+        Assertions.assertEquals(100_000, histogram.max());
+        Assertions.assertEquals(50_500, histogram.mean(), 0.001);
+        long p50 = histogram.percentile(0.5);
+        Assertions.assertTrue(p50 >= 50_000 && p50 < 100_000, Long.toString(p50));
+        Assertions.assertEquals(100_000, histogram.percentile(1));
+        Assertions.assertEquals(0, VHistogramMetrics.of().parseNanos().percentile(0.5));
+    }
+
+}
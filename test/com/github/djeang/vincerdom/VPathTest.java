@@ -0,0 +1,86 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class VPathTest {
+
+    private static final List<String> SIMPLE_EXPRESSIONS = Arrays.asList(
+            "/project/dependencies/dependency/artifactId",
+            "project/build/plugins/plugin",
+            "/project/dependencies/dependency[scope='test']/artifactId",
+            "/project/dependencies/dependency[ scope = \"test\" ]",
+            "/project/dependencies/dependency[3]/artifactId",
+            "/project/dependencies/dependency[groupId='org.hibernate'][2]",
+            "/project/*/plugins/plugin[1]/*",
+            "/project[@xmlns='http://maven.apache.org/POM/4.0.0']/modelVersion",
+            "/project[@unknown='']",
+            "/project/dependencies/dependency[12]",
+            "/other/dependencies");
+
+    @Test
+    void testSelect_simpleExpressions_sameAsXPath() {
+        VDocument doc = DocSamples.pomSample();
+        for (String expression : SIMPLE_EXPRESSIONS) {
+            VPath path = VPath.compile(expression);
+            Assertions.assertTrue(path.isSimple(), expression);
+            Assertions.assertEquals(describe(doc.xPath(expression)), describe(doc.xPath(path)), expression);
+        }
+    }
+
+    @Test
+    void testSelect_namespaceAwareDocument_sameAsXPath() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        String xml = "<a xmlns='urn:x'><b><d>1</d></b><c/><e xmlns=''><d>1</d></e></a>";
+        VDocument doc = VDocument.of(factory.newDocumentBuilder().parse(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+        for (String expression : Arrays.asList("/*", "/*/*", "/*/*[d='1']", "/*/e/d", "/*/*/*", "/a/b")) {
+            VPath path = VPath.compile(expression);
+            Assertions.assertTrue(path.isSimple(), expression);
+            Assertions.assertEquals(describe(doc.xPath(expression)), describe(doc.xPath(path)), expression);
+        }
+        Assertions.assertEquals(3, doc.xPath(VPath.compile("/*/*")).size());
+    }
+
+    @Test
+    void testSelect_complexExpressions_delegatedToXPath() {
+        VDocument doc = DocSamples.pomSample();
+        for (String expression : Arrays.asList("//artifactId", "/project/dependencies/dependency[last()]",
+                "/project/dependencies/dependency[scope='test' or version]", "/project/./build")) {
+            VPath path = VPath.compile(expression);
+            Assertions.assertFalse(path.isSimple(), expression);
+            Assertions.assertEquals(describe(doc.xPath(expression)), describe(doc.xPath(path)), expression);
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> VPath.compile("/project["));
+    }
+
+    @Test
+    void testSelect_compactDocument_sameAsVDocument() {
+        VDocument doc = DocSamples.pomSample();
+        VCompactDocument compact = VCompactDocument.parse(VPathTest.class.getResourceAsStream("sample-pom.xml"));
+        for (String expression : SIMPLE_EXPRESSIONS) {
+            if (!expression.startsWith("/")) {
+                continue;  // relative to the root element for compact documents
+            }
+            List<String> expected = doc.xPath(VPath.compile(expression)).stream()
+                    .map(VElement::text).collect(Collectors.toList());
+            List<String> actual = compact.xPath(expression).stream()
+                    .map(VCompactElement::text).collect(Collectors.toList());
+            Assertions.assertEquals(expected, actual, expression);
+        }
+    }
+
+    private static List<String> describe(List<VElement<Void>> elements) {
+        return elements.stream().map(element -> element.tagName() + ":" + element.text())
+                .collect(Collectors.toList());
+    }
+
+}
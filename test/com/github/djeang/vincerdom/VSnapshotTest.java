@@ -0,0 +1,125 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+class VSnapshotTest {
+
+    @Test
+    void testParse_snapshotWritten_sameAsParse(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("a.xml");
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<?pi data?>\n"
+                + "<a x=\"1\" y='&lt;2&gt;'>\n  <b>one &amp; two</b><c/><c></c>\n  <!-- c -->"
+                + "<d k='>'>\u00e9<e><f>1</f></e>text<![CDATA[<x>]]></d>\n</a>\n<!-- end -->\n";
+        Files.write(file, xml.getBytes(StandardCharsets.ISO_8859_1));
+        String expected = VDocument.parse(file).printAsString();
+        Assertions.assertEquals(expected, VSnapshot.parse(file).printAsString());  // parsed, then written
+        Assertions.assertTrue(VSnapshot.isUpToDate(VSnapshot.snapshotFileOf(file), file));
+        VDocument loaded = VSnapshot.parse(file);
+        Assertions.assertEquals("\u00e9" + "1text<x>", loaded.root().get("d").text());
+        Assertions.assertEquals(2, loaded.root().children("c").size());
+        Assertions.assertEquals(expected, loaded.printAsString());
+
+        Files.copy(VSnapshotTest.class.getResourceAsStream("sample-pom.xml"), dir.resolve("pom.xml"));
+        VDocument pom = VDocument.parse(dir.resolve("pom.xml"));
+        VSnapshot.write(pom, dir.resolve("pom.vsnap"));
+        Assertions.assertEquals(pom.printAsString(), VSnapshot.load(dir.resolve("pom.vsnap")).printAsString());
+        Assertions.assertFalse(VSnapshot.isUpToDate(dir.resolve("pom.vsnap"), dir.resolve("pom.xml")));
+    }
+
+    @Test
+    void testParseCompact_samplePom_sameAsVCompactDocument(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("pom.xml");
+        Files.copy(VSnapshotTest.class.getResourceAsStream("sample-pom.xml"), file);
+        VCompactDocument parsed = VCompactDocument.parse(file);
+        VSnapshot.parseCompact(file);
+        VCompactDocument loaded = VSnapshot.parseCompact(file);
+        Assertions.assertEquals(parsed.nodeCount(), loaded.nodeCount());
+        Assertions.assertEquals(parsed.root().attr("xmlns"), loaded.root().attr("xmlns"));
+        Assertions.assertEquals(parsed.root().text(), loaded.root().text());
+        Assertions.assertEquals(parsed.xPath("/project/dependencies/dependency/artifactId").stream()
+                        .map(VCompactElement::text).collect(Collectors.toList()),
+                loaded.xPath("/project/dependencies/dependency/artifactId").stream()
+                        .map(VCompactElement::text).collect(Collectors.toList()));
+        Assertions.assertEquals("project", loaded.root().get("build/plugins/plugin").parent().parent().parent()
+                .tagName());
+    }
+
+    @Test
+    void testParse_sourceChanged_snapshotRefreshed(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("a.xml");
+        Path snapshotFile = VSnapshot.snapshotFileOf(file);
+        long modified = System.currentTimeMillis() - 60_000;
+        Files.write(file, "<a><b>1</b></a>".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+        VSnapshot.parse(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 5000));
+        Assertions.assertTrue(VSnapshot.isUpToDate(snapshotFile, file));  // same content
+
+        Files.write(file, "<a><b>2</b></a>".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 10000));  // same size, content checked
+        Assertions.assertFalse(VSnapshot.isUpToDate(snapshotFile, file));
+        Assertions.assertEquals("2", VSnapshot.parse(file).root().get("b").text());
+        Assertions.assertTrue(VSnapshot.isUpToDate(snapshotFile, file));
+        Assertions.assertEquals("2", VSnapshot.load(snapshotFile).root().get("b").text());
+
+        Files.write(snapshotFile, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertFalse(VSnapshot.isUpToDate(snapshotFile, file));
+        Assertions.assertThrows(IllegalStateException.class, () -> VSnapshot.load(snapshotFile));
+        Assertions.assertEquals("2", VSnapshot.parse(file).root().get("b").text());
+    }
+
+    @Test
+    void testParse_checksumMatch_restampedOnce(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("a.xml");
+        Path snapshotFile = VSnapshot.snapshotFileOf(file);
+        Files.write(file, "<a><b>1</b></a>".getBytes(StandardCharsets.UTF_8));
+        VSnapshot.parse(file);  // just modified, so the modification time is not recorded
+        Assertions.assertEquals(VSnapshot.NONE, SnapshotReader.readStamp(snapshotFile)[1]);
+        long modified = System.currentTimeMillis() - 60_000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+        Assertions.assertEquals("1", VSnapshot.parse(file).root().get("b").text());
+        Assertions.assertEquals(modified, SnapshotReader.readStamp(snapshotFile)[1]);
+    }
+
+    @Test
+    void testParse_unusableSnapshotFile_parsedAnyway(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("a.xml");
+        Path snapshotFile = VSnapshot.snapshotFileOf(file);
+        Files.write(file, "<a><b>1</b></a>".getBytes(StandardCharsets.UTF_8));
+        VSnapshot.parse(file);
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+        Files.write(snapshotFile, Arrays.copyOf(snapshot, snapshot.length - 3));  // valid header, truncated body
+        Assertions.assertTrue(VSnapshot.isUpToDate(snapshotFile, file));
+        Assertions.assertEquals("1", VSnapshot.parse(file).root().get("b").text());
+        Assertions.assertArrayEquals(snapshot, Files.readAllBytes(snapshotFile));
+        Files.write(snapshotFile, Arrays.copyOf(snapshot, snapshot.length - 3));
+        Assertions.assertEquals("1", VSnapshot.parseCompact(file).root().get("b").text());
+
+        Files.delete(snapshotFile);
+        Files.createDirectories(snapshotFile.resolve("blocker"));  // snapshot file cannot be written
+        Assertions.assertEquals("1", VSnapshot.parse(file).root().get("b").text());
+        Assertions.assertEquals("1", VSnapshot.parseCompact(file).root().get("b").text());
+    }
+
+    @Test
+    void testEdit_unloadedElements_contentLoadedFirst(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("a.xml");
+        Files.write(file, "<a><b><c>1</c></b><d><e/></d></a>".getBytes(StandardCharsets.UTF_8));
+        VSnapshot.parse(file);
+        VDocument doc = VSnapshot.parse(file);
+        doc.root().get("b").text("2");
+        doc.root().get("d").add("f");
+        Assertions.assertEquals(VDocument.parse("<a><b>2</b><d><e/><f/></d></a>").printAsString(),
+                doc.printAsString());
+    }
+
+}
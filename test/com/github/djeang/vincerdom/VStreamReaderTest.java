@@ -0,0 +1,43 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class VStreamReaderTest {
+
+    @Test
+    void testRead_selectedPath_handedOneByOne() {
+        List<String> artifactIds = new ArrayList<>();
+        VStreamReader.of()
+                .on("/project/dependencies/dependency", dependency -> {
+                    Assertions.assertEquals(1, dependency.getW3cElement().getOwnerDocument()
+                            .getDocumentElement().getChildNodes().getLength());
+                    artifactIds.add(dependency.get("artifactId").text());
+                })
+                .read(VStreamReaderTest.class.getResourceAsStream("sample-pom.xml"));
+        List<VElement<Void>> expected = DocSamples.pomSample().root().get("dependencies").children("dependency");
+        Assertions.assertEquals(expected.size(), artifactIds.size());
+        Assertions.assertEquals("hibernate-core", artifactIds.get(1));
+    }
+
+    @Test
+    void testRead_severalPaths_eachHandled() {
+        List<String> names = new ArrayList<>();
+        VStreamReader.of()
+                .on("/project/groupId", el -> names.add(el.text()))
+                .on("/project/build/plugins/plugin", el -> names.add(el.get("artifactId").text()))
+                .read(VStreamReaderTest.class.getResourceAsStream("sample-pom.xml"));
+        Assertions.assertEquals("org.github.djeang", names.get(0));
+        Assertions.assertEquals("maven-compiler-plugin", names.get(1));
+        Assertions.assertEquals(4, names.size());
+    }
+
+    @Test
+    void testOn_relativePath_rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> VStreamReader.of().on("project/a", el -> {}));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class VStreamTransformerTest {
+
+    @Test
+    void testTransform_noHandler_copiedUnchanged() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><a x=\"1\">\n    <!-- c -->\n    <b/>\n    <c>t &amp; u</c>\n</a>";
+        Assertions.assertEquals(xml, transform(VStreamTransformer.of(), xml));
+    }
+
+    @Test
+    void testTransform_declaration_standaloneAndLineBreakKept() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<a>\n  <b>1</b>\n</a>";
+        VStreamTransformer transformer = VStreamTransformer.of().on("/a/b", b -> b.text("2"));
+        Assertions.assertEquals(xml.replace(">1<", ">2<"), transform(transformer, xml));
+        String noDeclaration = "<a><b>1</b></a>";
+        Assertions.assertEquals(noDeclaration, transform(VStreamTransformer.of(), noDeclaration));
+    }
+
+    @Test
+    void testTransform_selectedSubtrees_edited() {
+        String xml = "<a>\n  <b><v>1</v></b>\n  <b><v>2</v></b>\n  <c><b/></c>\n</a>";
+        String result = transform(VStreamTransformer.of()
+                .on("/a/b", b -> b.get("v").text("x").__.add("w").attr("k", "<")), xml);
+        Assertions.assertEquals("<a>\n  <b><v>x</v><w k=\"&lt;\"/></b>\n  <b><v>x</v><w k=\"&lt;\"/></b>\n"
+                + "  <c><b/></c>\n</a>", result);
+    }
+
+    @Test
+    void testTransform_removeAndAddSibling_applied() {
+        String xml = "<a><b id=\"1\"/><b id=\"2\"/></a>";
+        String result = transform(VStreamTransformer.of()
+                .on("/a/b", b -> {
+                    if ("1".equals(b.attr("id"))) {
+                        b.remove();
+                    } else {
+                        b.addSibling("before");
+                    }
+                }), xml);
+        Assertions.assertEquals("<a><before/><b id=\"2\"/></a>", result);
+    }
+
+    @Test
+    void testTransform_samePath_editedInPlace(@TempDir Path dir) throws Exception {
+        Path pom = dir.resolve("pom.xml");
+        Files.copy(VStreamTransformerTest.class.getResourceAsStream("sample-pom.xml"), pom);
+        VStreamTransformer.of()
+                .on("/project/dependencies/dependency", dep -> dep.get("version").make().text("1.0"))
+                .transform(pom, pom);
+        List<VElement<Void>> versions = VDocument.parse(pom).xPath("/project/dependencies/dependency/version");
+        Assertions.assertTrue(versions.size() > 3);
+        versions.forEach(version -> Assertions.assertEquals("1.0", version.text()));
+        Assertions.assertEquals(1, Files.list(dir).count());
+    }
+
+    private static String transform(VStreamTransformer transformer, String xml) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transformer.transform(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+import java.util.Collections;
+import java.util.List;
+
+class VXPathTest {
+
+    @AfterEach
+    void restoreCache() {
+        VXPath.setCacheSize(256);
+    }
+
+    @Test
+    void testCompile_sameExpression_cached() {
+        VXPath.clearCache();
+        VXPath.resetCacheStats();
+        XPathExpression first = VXPath.compile("/project/dependencies/dependency[%s]", 1);
+        XPathExpression second = VXPath.compile("/project/dependencies/dependency[1]");
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, VXPath.cacheHitCount());
+        Assertions.assertEquals(1, VXPath.cacheMissCount());
+    }
+
+    @Test
+    void testCompile_cacheFull_eldestEvicted() {
+        VXPath.setCacheSize(2);
+        XPathExpression a = VXPath.compile("/a");
+        VXPath.compile("/b");
+        VXPath.compile("/c");
+        Assertions.assertNotSame(a, VXPath.compile("/a"));
+    }
+
+    @Test
+    void testCompile_otherThread_ownInstance() throws Exception {
+        XPathExpression expression = VXPath.compile("/project");
+        XPathExpression[] other = new XPathExpression[1];
+        Thread thread = new Thread(() -> other[0] = VXPath.compile("/project"));
+        thread.start();
+        thread.join();
+        Assertions.assertNotNull(other[0]);
+        Assertions.assertNotSame(expression, other[0]);
+    }
+
+    @Test
+    void testCompile_invalidExpression_throwsIllegalState() {
+        Assertions.assertThrows(IllegalStateException.class, () -> VXPath.compile("/project["));
+    }
+
+    @Test
+    void testXPath_withVariables_boundAtEvaluation() {
+        VDocument doc = DocSamples.pomSample();
+        VXPath.clearCache();
+        VXPath.resetCacheStats();
+        String expression = "/project/dependencies/dependency[artifactId=$artifactId]/version";
+        List<VElement<Void>> hibernate = doc.xPath(expression,
+                Collections.singletonMap("artifactId", "hibernate-core"));
+        List<VElement<Void>> none = doc.xPath(expression,
+                Collections.singletonMap("artifactId", "' or '1'='1"));
+        Assertions.assertEquals(1, hibernate.size());
+        Assertions.assertEquals("3.6.3.Final", hibernate.get(0).text());
+        Assertions.assertTrue(none.isEmpty());
+        Assertions.assertEquals(1, VXPath.cacheMissCount());
+    }
+
+    @Test
+    void testXPath_withNumberVariable_converted() {
+        List<VElement<Void>> second = DocSamples.pomSample().xPath("/project/dependencies/dependency[$index]",
+                Collections.singletonMap("index", 2));
+        Assertions.assertEquals("hibernate-core", second.get(0).get("artifactId").text());
+    }
+
+    @Test
+    void testXPath_variablesWithForeignExpression_throwsIllegalArgument() throws Exception {
+        XPathExpression expression = XPathFactory.newInstance().newXPath()
+                .compile("/project/dependencies/dependency[artifactId=$artifactId]");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DocSamples.pomSample()
+                .xPath(expression, Collections.singletonMap("artifactId", "hibernate-core")));
+    }
+
+    @Test
+    void testXPath_unboundVariable_throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> DocSamples.pomSample()
+                .xPath("/project/dependencies/dependency[artifactId=$artifactId]", Collections.emptyMap()));
+    }
+
+}
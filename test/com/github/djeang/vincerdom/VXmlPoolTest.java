@@ -0,0 +1,68 @@
+package com.github.djeang.vincerdom;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+class VXmlPoolTest {
+
+    @Test
+    void testDocumentBuilder_sameThread_reused() {
+        Assertions.assertSame(VXmlPool.documentBuilder(), VXmlPool.documentBuilder());
+    }
+
+    @Test
+    void testDocumentBuilder_otherThread_notShared() throws Exception {
+        DocumentBuilder builder = VXmlPool.documentBuilder();
+        DocumentBuilder[] otherBuilder = new DocumentBuilder[1];
+        Thread thread = new Thread(() -> otherBuilder[0] = VXmlPool.documentBuilder());
+        thread.start();
+        thread.join();
+        Assertions.assertNotNull(otherBuilder[0]);
+        Assertions.assertNotSame(builder, otherBuilder[0]);
+    }
+
+    @Test
+    void testDocumentBuilder_defaultAsyncExecutor_reusedAcrossTasks() throws Exception {
+        Set<DocumentBuilder> builders = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < AsyncSupport.THREAD_COUNT * 4; i++) {
+            builders.add(CompletableFuture.supplyAsync(VXmlPool::documentBuilder, AsyncSupport.defaultExecutor())
+                    .get());
+        }
+        Assertions.assertTrue(builders.size() <= AsyncSupport.THREAD_COUNT, builders.size() + " builders");
+    }
+
+    @Test
+    void testRegister_documentBuilderFactory_used() {
+        DocumentBuilder previous = VXmlPool.documentBuilder();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        VXmlPool.register(factory);
+        try {
+            DocumentBuilder builder = VXmlPool.documentBuilder();
+            Assertions.assertNotSame(previous, builder);
+            Assertions.assertTrue(builder.isNamespaceAware());
+            Assertions.assertEquals("org.github.djeang",
+                    DocSamples.pomSample().root().get("groupId").text());
+        } finally {
+            VXmlPool.register(DocumentBuilderFactory.newInstance());
+        }
+    }
+
+    @Test
+    void testTransformer_resetBetweenUses() {
+        VDocument doc = VDocument.of("root");
+        String withDocType = doc.printAsString(
+                transformer -> transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM, "root.dtd"));
+        Assertions.assertTrue(withDocType.contains("root.dtd"));
+        Assertions.assertFalse(doc.printAsString(transformer -> { }).contains("root.dtd"));
+    }
+
+}